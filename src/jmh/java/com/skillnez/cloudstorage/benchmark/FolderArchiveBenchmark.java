@@ -0,0 +1,84 @@
+package com.skillnez.cloudstorage.benchmark;
+
+import com.skillnez.cloudstorage.service.FolderArchiveWriter;
+import com.skillnez.cloudstorage.service.FolderArchiveWriter.ArchiveEntry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+//Сборка zip-архива папки, как в FileSystemService.downloadFolder, из объектов в памяти.
+//objectLatencyMicros имитирует время до первого байта MinIO, чтобы был виден эффект предзагрузки
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FolderArchiveBenchmark {
+
+    @Param({"200"})
+    private int objectCount;
+
+    @Param({"4096", "262144"})
+    private int objectSize;
+
+    @Param({"0", "500"})
+    private long objectLatencyMicros;
+
+    @Param({"1", "8"})
+    private int prefetchDepth;
+
+    private ExecutorService executor;
+    private FolderArchiveWriter folderArchiveWriter;
+    private Map<String, byte[]> objects;
+    private List<ArchiveEntry> entries;
+
+    @Setup
+    public void setUp() {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        folderArchiveWriter = new FolderArchiveWriter(executor, 268435456L);
+        ReflectionTestUtils.setField(folderArchiveWriter, "prefetchDepth", prefetchDepth);
+        ReflectionTestUtils.setField(folderArchiveWriter, "maxBufferedBytes", 33554432L);
+        Random random = new Random(42);
+        objects = new HashMap<>(objectCount);
+        entries = new ArrayList<>(objectCount);
+        for (int i = 0; i < objectCount; i++) {
+            String objectName = "user-1-files/docs/file-" + i + ".bin";
+            byte[] content = new byte[objectSize];
+            random.nextBytes(content);
+            objects.put(objectName, content);
+            entries.add(new ArchiveEntry(objectName, objectName.substring("user-1-files/".length()), objectSize));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void writeArchive() throws IOException {
+        folderArchiveWriter.write(entries.iterator(), this::getObject, OutputStream.nullOutputStream());
+    }
+
+    private InputStream getObject(String objectName) {
+        if (objectLatencyMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(objectLatencyMicros));
+        }
+        return new ByteArrayInputStream(objects.get(objectName));
+    }
+
+}
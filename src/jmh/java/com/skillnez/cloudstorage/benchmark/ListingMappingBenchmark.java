@@ -0,0 +1,82 @@
+package com.skillnez.cloudstorage.benchmark;
+
+import com.skillnez.cloudstorage.dto.ResourceType;
+import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import com.skillnez.cloudstorage.entity.StorageObject;
+import com.skillnez.cloudstorage.utils.PathUtils;
+import io.minio.Xml;
+import io.minio.errors.XmlParserException;
+import io.minio.messages.Item;
+import io.minio.messages.ListBucketResultV2;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Листинг папки: Item из ответа MinIO (переиндексация, перенос папок) и StorageObject из индекса (API листинга)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListingMappingBenchmark {
+
+    private static final String FOLDER = "user-1-files/docs/";
+
+    @Param({"1000", "10000"})
+    private int listingSize;
+
+    private List<? extends Item> items;
+    private List<StorageObject> storageObjects;
+
+    @Setup
+    public void setUp() throws XmlParserException {
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">")
+                .append("<Name>user-files</Name><Prefix>").append(FOLDER).append("</Prefix>")
+                .append("<KeyCount>").append(listingSize).append("</KeyCount>")
+                .append("<MaxKeys>").append(listingSize).append("</MaxKeys><IsTruncated>false</IsTruncated>");
+        storageObjects = new ArrayList<>(listingSize);
+        for (int i = 0; i < listingSize; i++) {
+            boolean folder = i % 10 == 0;
+            String path = folder ? FOLDER + "folder-" + i + "/" : FOLDER + "file-" + i + ".txt";
+            long size = folder ? 0 : 1024L * i;
+            xml.append("<Contents><Key>").append(path).append("</Key>")
+                    .append("<LastModified>2025-01-01T00:00:00.000Z</LastModified>")
+                    .append("<ETag>&quot;d41d8cd98f00b204e9800998ecf8427e&quot;</ETag>")
+                    .append("<Size>").append(size).append("</Size>")
+                    .append("<StorageClass>STANDARD</StorageClass></Contents>");
+            storageObjects.add(StorageObject.builder()
+                    .path(path)
+                    .parent(FOLDER)
+                    .name(PathUtils.getFileOrFolderName(path))
+                    .type(folder ? ResourceType.DIRECTORY : ResourceType.FILE)
+                    .size(size)
+                    .build());
+        }
+        xml.append("</ListBucketResult>");
+        items = Xml.unmarshal(ListBucketResultV2.class, xml.toString()).contents();
+    }
+
+    @Benchmark
+    public List<StorageInfoResponseDto> mapMinioItems() {
+        List<StorageInfoResponseDto> elementsInFolder = new ArrayList<>(items.size());
+        for (Item item : items) {
+            if (!item.objectName().equals(FOLDER)) {
+                elementsInFolder.add(PathUtils.formStorageInfoResponseDto(item.objectName(), item.size()));
+            }
+        }
+        return elementsInFolder;
+    }
+
+    @Benchmark
+    public List<StorageInfoResponseDto> mapStorageObjects() {
+        List<StorageInfoResponseDto> elementsInFolder = new ArrayList<>(storageObjects.size());
+        for (StorageObject storageObject : storageObjects) {
+            elementsInFolder.add(PathUtils.formStorageInfoResponseDto(storageObject.getPath(), storageObject.getSize()));
+        }
+        return elementsInFolder;
+    }
+
+}
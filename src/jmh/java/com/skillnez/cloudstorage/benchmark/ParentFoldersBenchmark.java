@@ -0,0 +1,50 @@
+package com.skillnez.cloudstorage.benchmark;
+
+import com.skillnez.cloudstorage.utils.PathUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+//Поиск недостающих папок-предков при загрузке, как в FileSystemService.createParentFolders, без обращений к индексу и MinIO
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParentFoldersBenchmark {
+
+    @Param({"2", "8", "32"})
+    private int depth;
+
+    private String uploadPath;
+    private Set<String> existing;
+
+    @Setup
+    public void setUp() {
+        StringBuilder path = new StringBuilder("user-1-files/");
+        for (int i = 0; i < depth; i++) {
+            path.append("level-").append(i).append('/');
+        }
+        uploadPath = path.append("file.txt").toString();
+        //Верхняя половина дерева уже есть в индексе, нижнюю нужно создать
+        List<String> parentFolders = PathUtils.getParentFolders(uploadPath);
+        existing = new HashSet<>(parentFolders.subList(0, parentFolders.size() / 2 + 1));
+    }
+
+    @Benchmark
+    public List<String> getParentFolders() {
+        return PathUtils.getParentFolders(uploadPath);
+    }
+
+    @Benchmark
+    public List<String> findMissingParentFolders() {
+        return PathUtils.getParentFolders(uploadPath).stream()
+                .filter(ancestor -> !existing.contains(ancestor))
+                .toList();
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.skillnez.cloudstorage.benchmark;
+
+import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import com.skillnez.cloudstorage.utils.PathUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+//Запуск: ./mvnw -Pbenchmark test-compile exec:exec -Dbenchmark.include=PathUtilsBenchmark
+//legacy* методы гоняют прежнюю реализацию на regex, чтобы выигрыш был виден в одном отчете
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathUtilsBenchmark {
+
+    @Param({"1000", "10000"})
+    private int listingSize;
+
+    private String[] rawPaths;
+    private String[] backendPaths;
+
+    @Setup
+    public void setUp() {
+        rawPaths = new String[listingSize];
+        backendPaths = new String[listingSize];
+        for (int i = 0; i < listingSize; i++) {
+            rawPaths[i] = (i % 3 == 0) ? "/docs//reports  /" + i + "/" : "docs/reports/" + i + "/file-" + i + ".txt ";
+            backendPaths[i] = (i % 10 == 0)
+                    ? "user-1-files/docs/reports/folder-" + i + "/"
+                    : "user-1-files/docs/reports/file-" + i + ".txt";
+        }
+    }
+
+    @Benchmark
+    public void normalizePath(Blackhole blackhole) {
+        for (String path : rawPaths) {
+            blackhole.consume(PathUtils.normalizePath(path));
+        }
+    }
+
+    @Benchmark
+    public void legacyNormalizePath(Blackhole blackhole) {
+        for (String path : rawPaths) {
+            blackhole.consume(LegacyPathUtils.normalizePath(path));
+        }
+    }
+
+    @Benchmark
+    public void formStorageInfoResponseDto(Blackhole blackhole) {
+        for (String path : backendPaths) {
+            blackhole.consume(PathUtils.formStorageInfoResponseDto(path, 1024L));
+        }
+    }
+
+    @Benchmark
+    public void legacyFormStorageInfoResponseDto(Blackhole blackhole) {
+        for (String path : backendPaths) {
+            blackhole.consume(LegacyPathUtils.formStorageInfoResponseDto(path, 1024L));
+        }
+    }
+
+    //Копия PathUtils до перехода на посимвольный разбор
+    private static final class LegacyPathUtils {
+
+        static StorageInfoResponseDto formStorageInfoResponseDto(String backendPath, Long fileSize) {
+            String normalizedPath = normalizePath(backendPath);
+            normalizedPath = normalizedPath.replaceFirst("^[^/]+/", "");
+            normalizedPath = removeFileOrFolderName(normalizedPath);
+            String name = getFileOrFolderName(backendPath);
+            if (name.equals(normalizedPath)) {
+                normalizedPath = "";
+            }
+            return new StorageInfoResponseDto(normalizedPath, name, name.endsWith("/") ? null : fileSize, null);
+        }
+
+        static String removeFileOrFolderName(String backendPath) {
+            String normalizedPath = normalizePath(backendPath);
+            return normalizedPath.substring(0, nameSlashIndex(normalizedPath) + 1);
+        }
+
+        static String getFileOrFolderName(String backendPath) {
+            String normalizedPath = normalizePath(backendPath);
+            return normalizedPath.substring(nameSlashIndex(normalizedPath) + 1);
+        }
+
+        static String normalizePath(String path) {
+            if (path.matches(".*[:*?\"<>|].*")) {
+                throw new IllegalArgumentException(path);
+            }
+            String cleaned = path.trim()
+                    .replace("\\", "/")
+                    .replaceAll("/{2,}", "/")
+                    .replaceAll("/\\s+/", "")
+                    .trim()
+                    .replaceAll("^/+", "")
+                    .replaceAll("\\s+/", "/");
+            if (cleaned.contains("..")) {
+                cleaned = cleaned.replaceAll("\\.{2,}", ".");
+            }
+            return cleaned;
+        }
+
+        private static int nameSlashIndex(String normalizedPath) {
+            return normalizedPath.endsWith("/")
+                    ? normalizedPath.lastIndexOf('/', normalizedPath.length() - 2)
+                    : normalizedPath.lastIndexOf('/');
+        }
+    }
+
+}
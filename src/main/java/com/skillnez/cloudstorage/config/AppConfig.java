@@ -1,11 +1,18 @@
 package com.skillnez.cloudstorage.config;
 
+import com.skillnez.cloudstorage.security.CompactSessionSerializer;
+import com.skillnez.cloudstorage.security.TokenDenyList;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.data.redis.connection.RedisPassword;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 @Configuration
 public class AppConfig {
@@ -18,4 +25,21 @@ public class AppConfig {
         return new LettuceConnectionFactory(config);
     }
 
+    //Под этим именем Spring Session берет сериализатор атрибутов сессии вместо JDK-сериализации
+    @Bean("springSessionDefaultRedisSerializer")
+    public RedisSerializer<Object> springSessionDefaultRedisSerializer(ResourceLoader resourceLoader) {
+        return new CompactSessionSerializer(resourceLoader.getClassLoader());
+    }
+
+    //Отзывы токенов с других узлов
+    @Bean
+    @ConditionalOnProperty(name = "auth.token.enabled", havingValue = "true")
+    public RedisMessageListenerContainer tokenRevocationListenerContainer(
+            LettuceConnectionFactory lettuceConnectionFactory, TokenDenyList tokenDenyList) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(lettuceConnectionFactory);
+        container.addMessageListener(tokenDenyList, new ChannelTopic(TokenDenyList.CHANNEL));
+        return container;
+    }
+
 }
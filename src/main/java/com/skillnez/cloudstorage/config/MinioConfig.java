@@ -1,25 +1,103 @@
 package com.skillnez.cloudstorage.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import io.minio.http.HttpUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio", matchIfMissing = true)
 public class MinioConfig {
 
+    private static final long DEFAULT_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    //MinioClient выполняет запросы через очередь OkHttp, а ее диспетчер по умолчанию пропускает
+    //не больше 5 запросов к одному хосту, что ограничивает параллельность всех операций с MinIO.
+    //Сетевой ввод-вывод идет на платформенных потоках диспетчера, поэтому synchronized внутри OkHttp
+    //не закрепляет carrier-потоки, а виртуальный поток запроса просто ждет результат
+    @Bean
+    public OkHttpClient minioHttpClient(
+            @Value("${minio.http.max-requests:1024}")
+            int maxRequests,
+            @Value("${minio.http.max-requests-per-host:1024}")
+            int maxRequestsPerHost,
+            @Value("${minio.http.max-idle-connections:256}")
+            int maxIdleConnections,
+            @Value("${minio.http.keep-alive:PT5M}")
+            Duration keepAlive) {
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return HttpUtils.newDefaultHttpClient(DEFAULT_TIMEOUT, DEFAULT_TIMEOUT, DEFAULT_TIMEOUT)
+                .newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .build();
+    }
+
     @Bean
+    @Primary
     public MinioClient minioClient(
             @Value("${minio.url}")
             String url,
             @Value("${minio.access-key}")
             String minioAccessKey,
             @Value("${minio.secret-key}")
-            String minioSecretKey) {
+            String minioSecretKey,
+            OkHttpClient minioHttpClient) {
 
         return MinioClient.builder()
                 .endpoint(url)
                 .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    @Bean
+    public MinioAsyncClient minioAsyncClient(
+            @Value("${minio.url}")
+            String url,
+            @Value("${minio.access-key}")
+            String minioAccessKey,
+            @Value("${minio.secret-key}")
+            String minioSecretKey,
+            OkHttpClient minioHttpClient) {
+
+        return MinioAsyncClient.builder()
+                .endpoint(url)
+                .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    //Подписанные ссылки отдаются клиенту, поэтому подписываются адресом MinIO, который виден снаружи.
+    //Регион задан явно, чтобы подпись не требовала запроса к MinIO
+    @Bean
+    public MinioClient presignedUrlMinioClient(
+            @Value("${minio.presigned.endpoint:${minio.url}}")
+            String endpoint,
+            @Value("${minio.region:us-east-1}")
+            String region,
+            @Value("${minio.access-key}")
+            String minioAccessKey,
+            @Value("${minio.secret-key}")
+            String minioSecretKey) {
+
+        return MinioClient.builder()
+                .endpoint(endpoint)
+                .region(region)
+                .credentials(minioAccessKey, minioSecretKey)
                 .build();
     }
 
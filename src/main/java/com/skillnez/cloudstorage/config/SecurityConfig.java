@@ -1,6 +1,11 @@
 package com.skillnez.cloudstorage.config;
 
+import com.skillnez.cloudstorage.security.BoundedPasswordEncoder;
+import com.skillnez.cloudstorage.security.TokenAuthenticationFilter;
+import com.skillnez.cloudstorage.security.TokenService;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -10,24 +15,39 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.logout.LogoutFilter;
 import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
 import org.springframework.security.web.context.SecurityContextRepository;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.List;
+import java.util.Optional;
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    //true - вход выдает токены, запросы аутентифицируются по подписи без сессии в Redis
+    @Value("${auth.token.enabled:false}")
+    private boolean tokenAuthEnabled;
+    //Actuator на отдельном порту, который не публикуется наружу; -1 - на общем порту приложения
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
+    //Пул закрывается вместе с контекстом через BoundedPasswordEncoder.close()
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(
+            @Value("${auth.password.bcrypt-strength:10}") int strength,
+            @Value("${auth.password.hash-threads:0}") int threads,
+            @Value("${auth.password.queue-capacity:64}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        int hashThreads = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(strength, hashThreads, queueCapacity, meterRegistry);
     }
 
     @Bean
@@ -37,7 +57,8 @@ public class SecurityConfig {
 
     @Bean
     public SecurityContextRepository securityContextRepository() {
-        return new HttpSessionSecurityContextRepository();
+        return tokenAuthEnabled ? new RequestAttributeSecurityContextRepository()
+                : new HttpSessionSecurityContextRepository();
     }
 
     @Bean
@@ -54,25 +75,41 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, Optional<TokenService> tokenService)
+            throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/", "/index.html", "/static/**", "/favicon.ico", "/manifest.json").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/auth/sign-in").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/auth/sign-up").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/auth/refresh").permitAll()
                         .requestMatchers("/api/**").authenticated()
                         .requestMatchers("/", "/index.html", "/config.js", "/assets/**", "/login", "/registration", "/files/**").permitAll()
-                        .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll())
+                        .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
+                        .requestMatchers(request -> managementPort > 0 && request.getLocalPort() == managementPort)
+                        .permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").authenticated())
                 .formLogin(AbstractHttpConfigurer::disable).httpBasic(AbstractHttpConfigurer::disable)
                 .logout(logout -> logout.logoutUrl("/api/auth/sign-out")
+                        .addLogoutHandler((req, res, auth) -> tokenService.ifPresent(tokens -> {
+                            if (auth != null && auth.getDetails() instanceof TokenService.TokenClaims claims) {
+                                tokens.revokeSession(claims);
+                            }
+                        }))
                         .logoutSuccessHandler((req, res, auth) -> res.setStatus(HttpServletResponse.SC_NO_CONTENT)))
                 .exceptionHandling(eh -> eh.authenticationEntryPoint((request, response, authException) -> {
                     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                     response.setContentType("application/json");
                     response.getWriter().write("{\"message\":\"user not authenticated\"}");
-                })).sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED))
+                })).sessionManagement(session -> session.sessionCreationPolicy(tokenService.isPresent()
+                        ? SessionCreationPolicy.STATELESS : SessionCreationPolicy.IF_REQUIRED))
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()));
+        if (tokenService.isPresent()) {
+            //До LogoutFilter, чтобы выход видел, чей вход отзывать
+            http.addFilterBefore(new TokenAuthenticationFilter(tokenService.get()), LogoutFilter.class);
+        }
         return http.build();
     }
 
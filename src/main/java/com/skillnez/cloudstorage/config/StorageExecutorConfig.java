@@ -0,0 +1,61 @@
+package com.skillnez.cloudstorage.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class StorageExecutorConfig {
+
+    @Bean("storageTaskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public TaskExecutor storageTaskExecutor(
+            @Value("${storage.executor.pool-size:16}")
+            int poolSize) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("storage-");
+        return executor;
+    }
+
+    @Bean("storageJobExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public TaskExecutor storageJobExecutor(
+            @Value("${storage.job-executor.pool-size:4}")
+            int poolSize) {
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("storage-job-");
+        return executor;
+    }
+
+    //С spring.threads.virtual.enabled=true каждая задача получает свой виртуальный поток.
+    //Параллельность по-прежнему ограничивают семафоры в FolderMoveEngine, MinioClientService и FolderArchiveWriter
+    @Bean("storageTaskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public TaskExecutor virtualStorageTaskExecutor() {
+        return virtualThreadExecutor("storage-");
+    }
+
+    @Bean("storageJobExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public TaskExecutor virtualStorageJobExecutor() {
+        return virtualThreadExecutor("storage-job-");
+    }
+
+    private static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.skillnez.cloudstorage.config;
+
+import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import com.skillnez.cloudstorage.service.StorageUsageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+//Отклоняет загрузку по Content-Length еще до чтения тела, если она заведомо не помещается в квоту.
+//Это только ранний отказ: chunked-запрос приходит без длины, а проверка не атомарна. Квоту гарантирует
+//резерв места в StorageUsageService.reserve, который берут сами загрузки
+@Component
+public class StorageQuotaInterceptor implements HandlerInterceptor {
+
+    private final StorageUsageService storageUsageService;
+
+    @Autowired
+    public StorageQuotaInterceptor(StorageUsageService storageUsageService) {
+        this.storageUsageService = storageUsageService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"POST".equals(request.getMethod())) {
+            return true;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof CustomUserDetails user) {
+            storageUsageService.checkQuota(user.getId(), request.getContentLengthLong());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,23 @@
+package com.skillnez.cloudstorage.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final StorageQuotaInterceptor storageQuotaInterceptor;
+
+    @Autowired
+    public WebMvcConfig(StorageQuotaInterceptor storageQuotaInterceptor) {
+        this.storageQuotaInterceptor = storageQuotaInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(storageQuotaInterceptor)
+                .addPathPatterns("/api/resource", "/api/resource/stream");
+    }
+}
@@ -1,20 +1,23 @@
 package com.skillnez.cloudstorage.controller;
 
+import com.skillnez.cloudstorage.dto.TokenRefreshRequestDto;
+import com.skillnez.cloudstorage.dto.TokenResponseDto;
 import com.skillnez.cloudstorage.dto.UserRegistrationRequestDto;
 import com.skillnez.cloudstorage.dto.UserRegistrationResponseDto;
 import com.skillnez.cloudstorage.dto.UserSignInRequestDto;
 import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import com.skillnez.cloudstorage.security.TokenService;
 import com.skillnez.cloudstorage.service.FileSystemService;
 import com.skillnez.cloudstorage.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.context.SecurityContextRepository;
@@ -22,8 +25,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -33,35 +38,46 @@ public class AuthController {
     private final UserService userService;
     private final SecurityContextRepository securityContextRepository;
     private final FileSystemService fileSystemService;
+    private final Optional<TokenService> tokenService;
 
     @Autowired
-    public AuthController(AuthenticationManager authenticationManager, UserService userService, SecurityContextRepository securityContextRepository, FileSystemService fileSystemService) {
+    public AuthController(AuthenticationManager authenticationManager, UserService userService, SecurityContextRepository securityContextRepository, FileSystemService fileSystemService,
+                          Optional<TokenService> tokenService) {
         this.authenticationManager = authenticationManager;
         this.userService = userService;
         this.securityContextRepository = securityContextRepository;
         this.fileSystemService = fileSystemService;
+        this.tokenService = tokenService;
     }
 
+    //В режиме токенов в ответе пара токенов вместо сессионной куки
     @PostMapping("/sign-in")
-    public ResponseEntity<Map<String, String>> signIn(@RequestBody @Valid UserSignInRequestDto userSignInRequestDto,
+    public ResponseEntity<?> signIn(@RequestBody @Valid UserSignInRequestDto userSignInRequestDto,
                                     HttpServletRequest request, HttpServletResponse response) {
-        authenticateUser(userSignInRequestDto.getUsername(), userSignInRequestDto.getPassword(), request, response);
-        return ResponseEntity.ok().body(Map.of("username", userSignInRequestDto.getUsername()));
+        Authentication authentication = authenticateUser(userSignInRequestDto.getUsername(),
+                userSignInRequestDto.getPassword(), request, response);
+        return ResponseEntity.ok().body(signedInBody(authentication));
     }
 
     @PostMapping("/sign-up")
-    public ResponseEntity<Map<String, String>> signUp(
+    public ResponseEntity<?> signUp(
                                                 @RequestBody @Valid UserRegistrationRequestDto registrationRequestDto,
                                                 HttpServletRequest request,
                                                 HttpServletResponse response) {
         UserRegistrationResponseDto user = userService.registerUser(registrationRequestDto);
-        authenticateUser(registrationRequestDto.getUsername(),
+        Authentication authentication = authenticateUser(registrationRequestDto.getUsername(),
                 registrationRequestDto.getPassword(), request, response);
         fileSystemService.createRootFolder(user.getId());
-        return ResponseEntity.status(201).body(Map.of("username", registrationRequestDto.getUsername()));
+        return ResponseEntity.status(201).body(signedInBody(authentication));
     }
 
-    private void authenticateUser(String username, String password, HttpServletRequest request,
+    @PostMapping("/refresh")
+    public ResponseEntity<TokenResponseDto> refresh(@RequestBody @Valid TokenRefreshRequestDto refreshRequestDto) {
+        TokenService tokens = tokenService.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return ResponseEntity.ok().body(tokens.refresh(refreshRequestDto.getRefreshToken()));
+    }
+
+    private Authentication authenticateUser(String username, String password, HttpServletRequest request,
                                                HttpServletResponse response) {
         Authentication authentication = authenticationManager
                 .authenticate(new UsernamePasswordAuthenticationToken(username, password));
@@ -69,6 +85,13 @@ public class AuthController {
         context.setAuthentication(authentication);
         SecurityContextHolder.setContext(context);
         securityContextRepository.saveContext(context, request, response);
+        return authentication;
+    }
+
+    private Object signedInBody(Authentication authentication) {
+        CustomUserDetails user = (CustomUserDetails) authentication.getPrincipal();
+        return tokenService.<Object>map(tokens -> tokens.issue(user))
+                .orElseGet(() -> Map.of("username", user.getUsername()));
     }
 
 
@@ -1,11 +1,14 @@
 package com.skillnez.cloudstorage.controller;
 
+import com.skillnez.cloudstorage.dto.DirectoryPageResponseDto;
 import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
 import com.skillnez.cloudstorage.entity.CustomUserDetails;
 import com.skillnez.cloudstorage.service.FileSystemService;
+import com.skillnez.cloudstorage.utils.DirectorySort;
 import com.skillnez.cloudstorage.utils.PathUtils;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
@@ -32,6 +35,21 @@ public class DirectoryController {
         return ResponseEntity.ok(fileSystemService.getElementsInFolder(backendPath, userId));
     }
 
+    //С параметром limit листинг отдается постранично, продолжение - по курсору nextCursor
+    @GetMapping(value = "/directory", params = "limit")
+    public ResponseEntity<DirectoryPageResponseDto> getStorageInfoPage(
+            @AuthenticationPrincipal CustomUserDetails user,
+            @RequestParam String path,
+            @RequestParam int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "NAME") DirectorySort sort,
+            @RequestParam(defaultValue = "ASC") Sort.Direction direction) {
+        Long userId = user.getId();
+        String backendPath = PathUtils.formatPathForBackend(path, userId);
+        return ResponseEntity.ok(fileSystemService.getElementsInFolderPage(backendPath, sort, direction, cursor,
+                limit, userId));
+    }
+
     @PostMapping("/directory")
     public ResponseEntity<StorageInfoResponseDto> createFolder(@AuthenticationPrincipal CustomUserDetails user,
                                                                @RequestParam String path) {
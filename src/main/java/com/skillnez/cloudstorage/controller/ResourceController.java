@@ -1,39 +1,93 @@
 package com.skillnez.cloudstorage.controller;
 
+import com.skillnez.cloudstorage.dto.BulkOperationResultDto;
+import com.skillnez.cloudstorage.dto.BulkRequestDto;
+import com.skillnez.cloudstorage.dto.FileMetadataDto;
+import com.skillnez.cloudstorage.dto.MoveStatusResponseDto;
+import com.skillnez.cloudstorage.dto.PresignedUploadResponseDto;
 import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
 import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import com.skillnez.cloudstorage.exception.UploadLimitExceededException;
+import com.skillnez.cloudstorage.service.BulkOperationService;
+import com.skillnez.cloudstorage.service.ChunkedUploadService;
 import com.skillnez.cloudstorage.service.FileSystemService;
+import com.skillnez.cloudstorage.service.StorageMetrics;
 import com.skillnez.cloudstorage.utils.PathUtils;
+import com.skillnez.cloudstorage.utils.SearchMode;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUpload;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.UploadContext;
 import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.data.domain.Window;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api")
 public class ResourceController {
 
+    //Атрибуты запроса, через которые Tomcat отправляет файл с диска сам, вызовом sendfile
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String SEARCH_TRUNCATED_HEADER = "X-Search-Truncated";
     private final FileSystemService fileSystemService;
+    private final BulkOperationService bulkOperationService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final StorageMetrics storageMetrics;
+    @Value("${storage.stream-upload.max-file-size:5368709120}")
+    private long streamUploadMaxFileSize;
 
     @Autowired
-    public ResourceController(FileSystemService fileSystemService) {
+    public ResourceController(FileSystemService fileSystemService, BulkOperationService bulkOperationService,
+                              ChunkedUploadService chunkedUploadService, StorageMetrics storageMetrics) {
         this.fileSystemService = fileSystemService;
+        this.bulkOperationService = bulkOperationService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.storageMetrics = storageMetrics;
     }
 
     @GetMapping("/resource")
@@ -44,17 +98,28 @@ public class ResourceController {
         return ResponseEntity.ok(resource);
     }
 
+    /**
+     * Возвращает не больше {@code limit} совпадений по имени (по умолчанию 100, сверху ограничено
+     * {@code storage.search.max-limit}). Если совпадений больше, ответ содержит заголовок
+     * {@code X-Search-Truncated: true}, и клиенту нужно уточнить запрос или увеличить limit.
+     */
     @GetMapping("/resource/search")
     public ResponseEntity<List<StorageInfoResponseDto>> search(@AuthenticationPrincipal CustomUserDetails user,
-                                    @RequestParam("query") String query) {
+                                    @RequestParam("query") String query,
+                                    @RequestParam(value = "mode", defaultValue = "SUBSTRING") SearchMode mode,
+                                    @RequestParam(value = "limit", defaultValue = "100") int limit) {
         String backendPath = PathUtils.formatPathForBackend("", user.getId());
-        List<StorageInfoResponseDto> searchResult = fileSystemService.searchElements(backendPath, query, user.getId());
-        return ResponseEntity.ok(searchResult);
+        Window<StorageInfoResponseDto> searchResult =
+                fileSystemService.searchElements(backendPath, query, mode, limit, user.getId());
+        return ResponseEntity.ok()
+                .header(SEARCH_TRUNCATED_HEADER, Boolean.toString(searchResult.hasNext()))
+                .body(searchResult.getContent());
     }
 
     @GetMapping("/resource/download")
     public void download(@RequestParam("path") String path,
                                       @AuthenticationPrincipal CustomUserDetails user,
+                                      HttpServletRequest request,
                                       HttpServletResponse response) throws IOException {
         String backendPath = PathUtils.formatPathForBackend(path, user.getId());
         if (backendPath.endsWith("/")) {
@@ -62,18 +127,179 @@ public class ResourceController {
             response.setHeader("Content-Disposition", "attachment; filename=archive.zip");
             fileSystemService.downloadFolder(backendPath, user.getId(), response.getOutputStream());
             ResponseEntity.ok().build();
+        } else if (fileSystemService.isPresignedEnabled()) {
+            response.sendRedirect(fileSystemService.getPresignedDownloadUrl(backendPath, user.getId()).getUrl());
         } else {
+            FileMetadataDto metadata = fileSystemService.getFileMetadata(backendPath, user.getId());
+            String etag = (metadata.getEtag() == null) ? null : "\"" + metadata.getEtag() + "\"";
+            if (new ServletWebRequest(request, response).checkNotModified(etag, metadata.getLastModified().toEpochMilli())) {
+                return;
+            }
             String originalName = Paths.get(backendPath).getFileName().toString();
             String encodedName = URLEncoder.encode(originalName, StandardCharsets.UTF_8).replace("+", "%20");
-            try (InputStream downloadStream = fileSystemService.downloadFile(backendPath, user.getId())) {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader("Content-Disposition", "attachment; filename=\"" + encodedName + "\"");
+            List<HttpRange> requestedRanges = isRangeApplicable(request, etag, metadata)
+                    ? parseRanges(request.getHeader(HttpHeaders.RANGE))
+                    : List.of();
+            List<ByteRange> ranges = resolveRanges(requestedRanges, metadata.getSize());
+            if (!requestedRanges.isEmpty() && ranges.isEmpty()) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + metadata.getSize());
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            if (ranges.isEmpty()) {
                 response.setContentType("application/octet-stream");
-                response.setHeader("Content-Disposition", "attachment; filename=\"" + encodedName + "\"");
-                IOUtils.copy(downloadStream, response.getOutputStream());
-                response.flushBuffer();
+                response.setContentLengthLong(metadata.getSize());
+                if (writeLocalFile(backendPath, user.getId(), 0, metadata.getSize(), request, response)) {
+                    return;
+                }
+                try (InputStream downloadStream = fileSystemService.downloadFile(backendPath, user.getId())) {
+                    IOUtils.copy(downloadStream, response.getOutputStream());
+                    response.flushBuffer();
+                }
+            } else if (ranges.size() == 1) {
+                writeSingleRange(backendPath, user.getId(), ranges.getFirst(), metadata.getSize(), request, response);
+            } else {
+                writeMultipleRanges(backendPath, user.getId(), ranges, metadata.getSize(), response);
             }
         }
     }
 
+    private record ByteRange(long start, long end) {
+
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    //Синтаксически неверный Range по RFC 9110 игнорируется: отдаем файл целиком с 200
+    private static List<HttpRange> parseRanges(String rangeHeader) {
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Отбрасывает невыполнимые диапазоны и склеивает пересекающиеся и соседние, как разрешает RFC 9110:
+     * запрос из сотни {@code 0-} превращается в одно чтение файла, а суммарный ответ не больше размера файла.
+     * Пустой результат при непустом запросе означает 416.
+     */
+    private static List<ByteRange> resolveRanges(List<HttpRange> requestedRanges, long size) {
+        List<ByteRange> satisfiable = new ArrayList<>(requestedRanges.size());
+        for (HttpRange range : requestedRanges) {
+            try {
+                long start = range.getRangeStart(size);
+                long end = range.getRangeEnd(size);
+                if (start <= end) {
+                    satisfiable.add(new ByteRange(start, end));
+                }
+            } catch (IllegalArgumentException e) {
+                //Начало за концом файла: диапазон невыполним, остальные еще могут быть выполнимы
+            }
+        }
+        satisfiable.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>(satisfiable.size());
+        for (ByteRange range : satisfiable) {
+            ByteRange last = merged.isEmpty() ? null : merged.getLast();
+            if (last != null && range.start() <= last.end() + 1) {
+                merged.set(merged.size() - 1, new ByteRange(last.start(), Math.max(last.end(), range.end())));
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    //If-Range: диапазон отдаем только если файл не менялся с момента, когда клиент получил первую часть
+    private boolean isRangeApplicable(HttpServletRequest request, String etag, FileMetadataDto metadata) {
+        if (request.getHeader(HttpHeaders.RANGE) == null) {
+            return false;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long ifRangeSeconds = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return ifRangeSeconds == metadata.getLastModified().getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private void writeSingleRange(String backendPath, Long userId, ByteRange range, long size,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long start = range.start();
+        long end = range.end();
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("application/octet-stream");
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        response.setContentLengthLong(end - start + 1);
+        if (writeLocalFile(backendPath, userId, start, end - start + 1, request, response)) {
+            return;
+        }
+        try (InputStream downloadStream = fileSystemService.downloadFile(backendPath, userId, start, end - start + 1)) {
+            IOUtils.copy(downloadStream, response.getOutputStream());
+            response.flushBuffer();
+        }
+    }
+
+    //Файл на локальном диске отдается без копирования через буферы JVM: Tomcat sendfile,
+    //а если коннектор его не поддерживает - FileChannel.transferTo в поток ответа. false, если файла на диске нет
+    private boolean writeLocalFile(String backendPath, Long userId, long start, long length,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Path> localFile = fileSystemService.getLocalFile(backendPath, userId);
+        if (localFile.isEmpty()) {
+            return false;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, localFile.get().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+        } else {
+            try (FileChannel channel = FileChannel.open(localFile.get(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+                for (long position = start; position < start + length; ) {
+                    long transferred = channel.transferTo(position, start + length - position, target);
+                    if (transferred <= 0) {
+                        throw new EOFException("File was truncated during download: " + backendPath);
+                    }
+                    position += transferred;
+                }
+            }
+            response.flushBuffer();
+        }
+        storageMetrics.recordDownload(length);
+        return true;
+    }
+
+    private void writeMultipleRanges(String backendPath, Long userId, List<ByteRange> ranges, long size,
+                                     HttpServletResponse response) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        OutputStream outputStream = response.getOutputStream();
+        for (ByteRange range : ranges) {
+            long start = range.start();
+            long end = range.end();
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                                + "Content-Type: application/octet-stream\r\n"
+                                + "Content-Range: bytes " + start + "-" + end + "/" + size + "\r\n\r\n";
+            outputStream.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            try (InputStream downloadStream = fileSystemService.downloadFile(backendPath, userId, start, range.length())) {
+                IOUtils.copy(downloadStream, outputStream);
+            }
+        }
+        outputStream.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        response.flushBuffer();
+    }
+
     @GetMapping("/resource/move")
     public ResponseEntity<StorageInfoResponseDto> move(@RequestParam("from") String pathFrom,
                                   @RequestParam("to") String pathTo,
@@ -83,6 +309,22 @@ public class ResourceController {
         return ResponseEntity.ok().body(fileSystemService.moveOrRename(backendPathFrom, backendPathTo, user.getId()));
     }
 
+    @GetMapping("/resource/move/async")
+    public ResponseEntity<MoveStatusResponseDto> moveAsync(@RequestParam("from") String pathFrom,
+                                                           @RequestParam("to") String pathTo,
+                                                           @AuthenticationPrincipal CustomUserDetails user) {
+        String backendPathFrom = PathUtils.formatPathForBackend(pathFrom, user.getId());
+        String backendPathTo = PathUtils.formatPathForBackend(pathTo, user.getId());
+        return ResponseEntity.status(202)
+                .body(fileSystemService.moveOrRenameAsync(backendPathFrom, backendPathTo, user.getId()));
+    }
+
+    @GetMapping("/resource/move/status")
+    public ResponseEntity<MoveStatusResponseDto> moveStatus(@RequestParam("id") String operationId,
+                                                            @AuthenticationPrincipal CustomUserDetails user) {
+        return ResponseEntity.ok(fileSystemService.getMoveStatus(operationId, user.getId()));
+    }
+
 
     @PostMapping("/resource")
     public ResponseEntity<List<StorageInfoResponseDto>> upload(@RequestParam("path") String path,
@@ -92,6 +334,131 @@ public class ResourceController {
         return ResponseEntity.status(201).body(fileSystemService.upload(backendPath, file));
     }
 
+    //path берется из query string вручную: getParameter заставил бы контейнер разобрать и сохранить весь multipart
+    @PostMapping("/resource/stream")
+    public ResponseEntity<List<StorageInfoResponseDto>> uploadStream(@AuthenticationPrincipal CustomUserDetails user,
+                                                                     HttpServletRequest request) throws IOException {
+        if (!isMultipart(request)) {
+            throw new IllegalArgumentException("Request is not multipart");
+        }
+        UploadContext uploadContext = uploadContext(request);
+        String backendPath = PathUtils.formatPathForBackend(getQueryParameter(request, "path"), user.getId());
+        FileUpload fileUpload = new FileUpload();
+        fileUpload.setFileSizeMax(streamUploadMaxFileSize);
+        List<StorageInfoResponseDto> uploadedElements = new ArrayList<>();
+        try {
+            FileItemIterator parts = fileUpload.getItemIterator(uploadContext);
+            while (parts.hasNext()) {
+                FileItemStream part = parts.next();
+                if (part.isFormField() || !"object".equals(part.getFieldName())
+                    || part.getName() == null || part.getName().isEmpty()) {
+                    continue;
+                }
+                try (InputStream partStream = part.openStream()) {
+                    uploadedElements.add(fileSystemService
+                            .uploadStream(backendPath, part.getName(), partStream, part.getContentType()));
+                }
+            }
+        } catch (FileUploadException e) {
+            if (isSizeLimitExceeded(e)) {
+                throw new UploadLimitExceededException("File is larger than " + streamUploadMaxFileSize + " bytes");
+            }
+            throw new IllegalArgumentException("Malformed multipart request", e);
+        } catch (IOException | MinioOperationException e) {
+            //Превышение лимита при чтении части приходит как IOException, часто внутри ошибки хранилища
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (isSizeLimitExceeded(cause)) {
+                    throw new UploadLimitExceededException("File is larger than " + streamUploadMaxFileSize + " bytes");
+                }
+            }
+            throw e;
+        }
+        return ResponseEntity.status(201).body(uploadedElements);
+    }
+
+    //FileUploadBase.isMultipartContent перегружен для javax.servlet, которого нет в classpath
+    private static boolean isMultipart(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.regionMatches(true, 0, "multipart/", 0, "multipart/".length());
+    }
+
+    //Общий предок SizeException в commons-fileupload 1.x защищенный, поэтому проверяются его публичные наследники
+    private static boolean isSizeLimitExceeded(Throwable e) {
+        return e instanceof FileUploadBase.FileSizeLimitExceededException
+               || e instanceof FileUploadBase.SizeLimitExceededException;
+    }
+
+    //Потоковый разбор commons-fileupload не зависит от версии Servlet API: тело читается через этот адаптер
+    private static UploadContext uploadContext(HttpServletRequest request) {
+        return new UploadContext() {
+            @Override
+            public long contentLength() {
+                return request.getContentLengthLong();
+            }
+
+            @Override
+            public String getCharacterEncoding() {
+                return request.getCharacterEncoding();
+            }
+
+            @Override
+            public String getContentType() {
+                return request.getContentType();
+            }
+
+            @Override
+            @Deprecated
+            public int getContentLength() {
+                return request.getContentLength();
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return request.getInputStream();
+            }
+        };
+    }
+
+    private static String getQueryParameter(HttpServletRequest request, String name) {
+        String queryString = request.getQueryString();
+        if (queryString != null) {
+            for (String parameter : queryString.split("&")) {
+                int separatorIndex = parameter.indexOf('=');
+                String key = (separatorIndex == -1) ? parameter : parameter.substring(0, separatorIndex);
+                if (name.equals(URLDecoder.decode(key, StandardCharsets.UTF_8))) {
+                    return (separatorIndex == -1)
+                            ? ""
+                            : URLDecoder.decode(parameter.substring(separatorIndex + 1), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Required parameter " + name + " is missing");
+    }
+
+    //Размер файла подписывается вместе с формой: хранилище не примет объект другого размера
+    @PostMapping("/resource/upload-url")
+    public ResponseEntity<PresignedUploadResponseDto> getUploadUrl(@RequestParam("path") String path,
+                                                                   @RequestParam("size") long size,
+                                                                   @RequestParam(value = "contentType", required = false)
+                                                                   String contentType,
+                                                                   @AuthenticationPrincipal CustomUserDetails user) {
+        String backendPath = PathUtils.formatPathForBackend(path, user.getId());
+        return ResponseEntity.ok(chunkedUploadService.createPresignedUpload(backendPath, size, contentType, user.getId()));
+    }
+
+    @PostMapping("/resource/upload-complete")
+    public ResponseEntity<StorageInfoResponseDto> completeUpload(@RequestParam("uploadId") String uploadId,
+                                                                 @AuthenticationPrincipal CustomUserDetails user) {
+        return ResponseEntity.status(201).body(chunkedUploadService.complete(uploadId, user.getId()));
+    }
+
+    //Результат каждой операции возвращается отдельно, в порядке запроса
+    @PostMapping("/resource/bulk")
+    public ResponseEntity<List<BulkOperationResultDto>> bulk(@RequestBody @Valid BulkRequestDto bulkRequestDto,
+                                                             @AuthenticationPrincipal CustomUserDetails user) {
+        return ResponseEntity.ok(bulkOperationService.execute(bulkRequestDto.getOperations(), user.getId()));
+    }
+
     @DeleteMapping("/resource")
     public ResponseEntity<String> delete(@RequestParam("path") String path,
                                     @AuthenticationPrincipal CustomUserDetails user) {
@@ -0,0 +1,71 @@
+package com.skillnez.cloudstorage.controller;
+
+import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import com.skillnez.cloudstorage.dto.UploadSessionResponseDto;
+import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import com.skillnez.cloudstorage.exception.InvalidChunkException;
+import com.skillnez.cloudstorage.service.ChunkedUploadService;
+import com.skillnez.cloudstorage.utils.PathUtils;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/upload/sessions")
+public class UploadSessionController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    public UploadSessionController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    @PostMapping
+    public ResponseEntity<UploadSessionResponseDto> createSession(@RequestParam("path") String path,
+                                                                  @RequestParam("size") long size,
+                                                                  @RequestParam(value = "contentType", required = false) String contentType,
+                                                                  @AuthenticationPrincipal CustomUserDetails user) {
+        String backendPath = PathUtils.formatPathForBackend(path, user.getId());
+        return ResponseEntity.status(201).body(chunkedUploadService.createSession(backendPath, size, contentType, user.getId()));
+    }
+
+    @PutMapping("/{id}/chunks/{number}")
+    public ResponseEntity<Void> uploadChunk(@PathVariable("id") String sessionId,
+                                            @PathVariable("number") int chunkNumber,
+                                            @AuthenticationPrincipal CustomUserDetails user,
+                                            HttpServletRequest request) throws IOException {
+        long chunkLength = request.getContentLengthLong();
+        if (chunkLength < 0) {
+            throw new InvalidChunkException("Content-Length header is required");
+        }
+        try (InputStream chunk = request.getInputStream()) {
+            chunkedUploadService.uploadChunk(sessionId, chunkNumber, chunk, chunkLength, user.getId());
+        }
+        return ResponseEntity.status(204).build();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<UploadSessionResponseDto> getStatus(@PathVariable("id") String sessionId,
+                                                              @AuthenticationPrincipal CustomUserDetails user) {
+        return ResponseEntity.ok(chunkedUploadService.getStatus(sessionId, user.getId()));
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<StorageInfoResponseDto> complete(@PathVariable("id") String sessionId,
+                                                           @AuthenticationPrincipal CustomUserDetails user) {
+        return ResponseEntity.status(201).body(chunkedUploadService.complete(sessionId, user.getId()));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> abort(@PathVariable("id") String sessionId,
+                                      @AuthenticationPrincipal CustomUserDetails user) {
+        chunkedUploadService.abort(sessionId, user.getId());
+        return ResponseEntity.status(204).build();
+    }
+}
@@ -1,7 +1,12 @@
 package com.skillnez.cloudstorage.controller;
 
+import com.skillnez.cloudstorage.dto.StorageUsageResponseDto;
+import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import com.skillnez.cloudstorage.service.StorageUsageService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -12,9 +17,21 @@ import java.util.Map;
 @RequestMapping("/api/user")
 public class UserController {
 
+    private final StorageUsageService storageUsageService;
+
+    @Autowired
+    public UserController(StorageUsageService storageUsageService) {
+        this.storageUsageService = storageUsageService;
+    }
+
     @GetMapping("/me")
     public ResponseEntity<Map<String, String>> me(Authentication authentication) {
         return ResponseEntity.ok(Map.of("username", authentication.getName()));
     }
 
+    @GetMapping("/usage")
+    public ResponseEntity<StorageUsageResponseDto> usage(@AuthenticationPrincipal CustomUserDetails user) {
+        return ResponseEntity.ok(storageUsageService.getUsage(user.getId()));
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.skillnez.cloudstorage.controller.exceptionHandlers;
 
+import com.skillnez.cloudstorage.exception.PasswordHashingRejectedException;
 import com.skillnez.cloudstorage.exception.UserAlreadyExistsException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -15,4 +16,9 @@ public class AuthExceptionHandler {
         return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
     }
 
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingRejectedException(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(429).header("Retry-After", "1").body(Map.of("message", e.getMessage()));
+    }
+
 }
@@ -2,18 +2,25 @@ package com.skillnez.cloudstorage.controller.exceptionHandlers;
 
 import com.skillnez.cloudstorage.controller.DirectoryController;
 import com.skillnez.cloudstorage.controller.ResourceController;
+import com.skillnez.cloudstorage.controller.UploadSessionController;
 import com.skillnez.cloudstorage.exception.BadPathFormatException;
 import com.skillnez.cloudstorage.exception.FolderAlreadyExistsException;
+import com.skillnez.cloudstorage.exception.InvalidChunkException;
+import com.skillnez.cloudstorage.exception.MoveInProgressException;
 import com.skillnez.cloudstorage.exception.NoParentFolderException;
+import com.skillnez.cloudstorage.exception.PartialDeleteException;
 import com.skillnez.cloudstorage.exception.UploadErrorException;
+import com.skillnez.cloudstorage.exception.UploadLimitExceededException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
-@RestControllerAdvice(assignableTypes = {DirectoryController.class, ResourceController.class})
+@RestControllerAdvice(assignableTypes = {DirectoryController.class, ResourceController.class,
+        UploadSessionController.class})
 public class FileSystemExceptionsHandler {
 
     @ExceptionHandler(NoSuchElementException.class)
@@ -41,5 +48,28 @@ public class FileSystemExceptionsHandler {
         return ResponseEntity.status(500).body(Map.of("message", e.getMessage()));
     }
 
+    @ExceptionHandler(UploadLimitExceededException.class)
+    public ResponseEntity<?> handleUploadLimitExceededException(UploadLimitExceededException e) {
+        return ResponseEntity.status(413).body(Map.of("message", e.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidChunkException.class)
+    public ResponseEntity<?> handleInvalidChunkException(InvalidChunkException e) {
+        return ResponseEntity.status(400).body(Map.of("message", e.getMessage()));
+    }
+
+    @ExceptionHandler(MoveInProgressException.class)
+    public ResponseEntity<?> handleMoveInProgressException(MoveInProgressException e) {
+        return ResponseEntity.status(409).body(Map.of("message", e.getMessage()));
+    }
+
+    @ExceptionHandler(PartialDeleteException.class)
+    public ResponseEntity<?> handlePartialDeleteException(PartialDeleteException e) {
+        List<String> failedPaths = e.getFailedObjects().keySet().stream()
+                .map(objectName -> objectName.substring(objectName.indexOf('/') + 1))
+                .sorted()
+                .toList();
+        return ResponseEntity.status(500).body(Map.of("message", e.getMessage(), "failed", failedPaths));
+    }
 
 }
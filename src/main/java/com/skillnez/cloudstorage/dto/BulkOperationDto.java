@@ -0,0 +1,23 @@
+package com.skillnez.cloudstorage.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//DELETE использует path, MOVE и COPY - from и to, как одиночные эндпоинты
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BulkOperationDto {
+
+    @NotNull(message = "Operation type is required")
+    private BulkOperationType type;
+
+    private String path;
+
+    private String from;
+
+    private String to;
+
+}
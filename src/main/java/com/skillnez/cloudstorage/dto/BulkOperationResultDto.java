@@ -0,0 +1,22 @@
+package com.skillnez.cloudstorage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkOperationResultDto {
+
+    private final BulkOperationType type;
+    private final String path;
+    private final String from;
+    private final String to;
+    private final BulkOperationStatus status;
+    private final String message;
+    private final StorageInfoResponseDto resource;
+
+}
@@ -0,0 +1,21 @@
+package com.skillnez.cloudstorage.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class BulkRequestDto {
+
+    @NotEmpty(message = "Operations list can't be empty")
+    @Size(max = 1000, message = "No more than 1000 operations per request")
+    private List<@Valid BulkOperationDto> operations;
+
+}
@@ -0,0 +1,15 @@
+package com.skillnez.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class DirectoryPageResponseDto {
+
+    private final List<StorageInfoResponseDto> items;
+    private final String nextCursor;
+
+}
@@ -0,0 +1,16 @@
+package com.skillnez.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+public class FileMetadataDto {
+
+    private final long size;
+    private final String etag;
+    private final Instant lastModified;
+
+}
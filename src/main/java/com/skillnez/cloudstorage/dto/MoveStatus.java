@@ -0,0 +1,5 @@
+package com.skillnez.cloudstorage.dto;
+
+public enum MoveStatus {
+    RUNNING, COMPLETED, FAILED
+}
@@ -0,0 +1,21 @@
+package com.skillnez.cloudstorage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MoveStatusResponseDto {
+
+    private final String id;
+    private final MoveStatus status;
+    private final long copiedObjects;
+    private final long totalObjects;
+    private final String message;
+    private final StorageInfoResponseDto resource;
+
+}
@@ -0,0 +1,20 @@
+package com.skillnez.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class PresignedUploadResponseDto {
+
+    private final String uploadId;
+    private final String url;
+    private final Map<String, String> formData;
+    private final String path;
+    private final long size;
+    private final Instant expiresAt;
+
+}
@@ -0,0 +1,16 @@
+package com.skillnez.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+public class PresignedUrlResponseDto {
+
+    private final String url;
+    private final String path;
+    private final Instant expiresAt;
+
+}
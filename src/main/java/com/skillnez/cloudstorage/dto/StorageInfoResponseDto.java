@@ -3,6 +3,7 @@ package com.skillnez.cloudstorage.dto;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
+import lombok.extern.jackson.Jacksonized;
 
 import java.util.Objects;
 
@@ -12,6 +13,7 @@ import java.util.Objects;
 @Setter
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Builder
+@Jacksonized
 public class StorageInfoResponseDto {
 
     @Override
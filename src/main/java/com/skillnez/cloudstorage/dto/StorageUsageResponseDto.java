@@ -0,0 +1,16 @@
+package com.skillnez.cloudstorage.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StorageUsageResponseDto {
+
+    private final long usedBytes;
+    private final long objectCount;
+    private final Long quotaBytes;
+
+}
@@ -0,0 +1,16 @@
+package com.skillnez.cloudstorage.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class TokenRefreshRequestDto {
+
+    @NotBlank(message = "Refresh token can't be blank")
+    private String refreshToken;
+
+}
@@ -0,0 +1,15 @@
+package com.skillnez.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TokenResponseDto {
+
+    private String username;
+    private String accessToken;
+    private String refreshToken;
+    private long expiresIn;
+
+}
@@ -0,0 +1,22 @@
+package com.skillnez.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+@Builder
+public class UploadSessionResponseDto {
+
+    private final String id;
+    private final String path;
+    private final long size;
+    private final long chunkSize;
+    private final int totalChunks;
+    private final List<Integer> receivedChunks;
+    private final long receivedBytes;
+
+}
@@ -0,0 +1,29 @@
+package com.skillnez.cloudstorage.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "content_blobs")
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+public class ContentBlob {
+
+    @Id
+    @Column(name = "blob_key", nullable = false)
+    private String key;
+
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private long refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
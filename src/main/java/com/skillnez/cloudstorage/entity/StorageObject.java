@@ -0,0 +1,52 @@
+package com.skillnez.cloudstorage.entity;
+
+import com.skillnez.cloudstorage.dto.ResourceType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "storage_objects")
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+public class StorageObject {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "path", unique = true, nullable = false)
+    private String path;
+
+    @Column(name = "parent")
+    private String parent;
+
+    @Column(name = "name", nullable = false)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false)
+    private ResourceType type;
+
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified", nullable = false)
+    private Instant lastModified;
+
+    //Ключ блоба с содержимым в режиме дедупликации, null - объект хранится по своему пути
+    @Column(name = "blob_key")
+    private String blobKey;
+
+    public String getObjectKey() {
+        return blobKey == null ? path : blobKey;
+    }
+}
@@ -0,0 +1,45 @@
+package com.skillnez.cloudstorage.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "upload_sessions")
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+public class UploadSession {
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "path", nullable = false)
+    private String path;
+
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    @Column(name = "chunk_size", nullable = false)
+    private long chunkSize;
+
+    //Место, занятое под сессию в user_storage_usage: снимается при завершении, отмене или очистке сессии
+    @Column(name = "reserved_bytes", nullable = false)
+    private long reservedBytes;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
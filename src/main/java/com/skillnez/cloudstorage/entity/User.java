@@ -1,5 +1,6 @@
 package com.skillnez.cloudstorage.entity;
 
+import com.skillnez.cloudstorage.security.UserCacheInvalidationListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -7,6 +8,7 @@ import java.util.List;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheInvalidationListener.class)
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
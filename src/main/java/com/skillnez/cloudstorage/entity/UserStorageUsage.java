@@ -0,0 +1,24 @@
+package com.skillnez.cloudstorage.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Table(name = "user_storage_usage")
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+public class UserStorageUsage {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "used_bytes", nullable = false)
+    private long usedBytes;
+
+    @Column(name = "object_count", nullable = false)
+    private long objectCount;
+}
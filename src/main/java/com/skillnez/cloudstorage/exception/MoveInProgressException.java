@@ -0,0 +1,7 @@
+package com.skillnez.cloudstorage.exception;
+
+public class MoveInProgressException extends RuntimeException {
+    public MoveInProgressException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.skillnez.cloudstorage.exception;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+@Getter
+public class PartialDeleteException extends RuntimeException {
+
+    private final Map<String, String> failedObjects;
+
+    public PartialDeleteException(String message, Map<String, String> failedObjects) {
+        super(message);
+        this.failedObjects = failedObjects;
+    }
+}
@@ -0,0 +1,7 @@
+package com.skillnez.cloudstorage.exception;
+
+public class PasswordHashingRejectedException extends RuntimeException {
+    public PasswordHashingRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.skillnez.cloudstorage.exception;
+
+public class UploadLimitExceededException extends RuntimeException {
+    public UploadLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.skillnez.cloudstorage.repository;
+
+public interface BlobReferences {
+
+    String getBlobKey();
+
+    Long getReferences();
+}
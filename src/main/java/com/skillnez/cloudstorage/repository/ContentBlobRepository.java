@@ -0,0 +1,39 @@
+package com.skillnez.cloudstorage.repository;
+
+import com.skillnez.cloudstorage.entity.ContentBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ContentBlobRepository extends JpaRepository<ContentBlob, String> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.refCount = b.refCount + 1 WHERE b.key = :key")
+    int incrementRefCount(@Param("key") String key);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO content_blobs (blob_key, size, ref_count, created_at) " +
+                   "VALUES (:key, :size, 1, now()) " +
+                   "ON CONFLICT (blob_key) DO UPDATE SET ref_count = content_blobs.ref_count + 1",
+           nativeQuery = true)
+    int insertOrIncrementRefCount(@Param("key") String key, @Param("size") long size);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ContentBlob b SET b.refCount = b.refCount - :count WHERE b.key = :key")
+    int decrementRefCount(@Param("key") String key, @Param("count") long count);
+
+    //Строки остаются заблокированными до конца транзакции сборщика, поэтому конкурентная загрузка
+    //того же содержимого дождется удаления объекта и создаст блоб заново
+    @Query(value = "SELECT * FROM content_blobs WHERE ref_count <= 0 LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<ContentBlob> lockUnreferenced(@Param("limit") int limit);
+}
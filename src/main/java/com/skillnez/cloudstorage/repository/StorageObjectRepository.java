@@ -0,0 +1,126 @@
+package com.skillnez.cloudstorage.repository;
+
+import com.skillnez.cloudstorage.dto.ResourceType;
+import com.skillnez.cloudstorage.entity.StorageObject;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StorageObjectRepository extends JpaRepository<StorageObject, Long> {
+
+    boolean existsByPath(String path);
+
+    long countByPathIn(Collection<String> paths);
+
+    @Query("SELECT o.path FROM StorageObject o WHERE o.path IN :paths")
+    List<String> findPathsByPathIn(@Param("paths") Collection<String> paths);
+
+    Optional<StorageObject> findByPath(String path);
+
+    List<StorageObject> findAllByPathIn(Collection<String> paths);
+
+    @Query("SELECT COUNT(o) FROM StorageObject o WHERE o.path LIKE :prefix ESCAPE '!'")
+    long countByPathPrefix(@Param("prefix") String prefix);
+
+    List<StorageObject> findAllByParentOrderByNameAsc(String parent);
+
+    Window<StorageObject> findByPathStartingWith(String prefix, ScrollPosition position, Sort sort, Limit limit);
+
+    @Query("SELECT o.blobKey AS blobKey, COUNT(o) AS references FROM StorageObject o " +
+           "WHERE o.path LIKE :prefix ESCAPE '!' AND o.blobKey IS NOT NULL GROUP BY o.blobKey")
+    List<BlobReferences> countBlobReferencesByPathPrefix(@Param("prefix") String prefix);
+
+    //retained уходит одним параметром-массивом: при сбое хранилища в нем все ключи папки,
+    //а NOT IN со списком упирается в лимит Postgres на 32767 параметров запроса
+    @Query(value = "SELECT blob_key AS \"blobKey\", COUNT(*) AS \"references\" FROM storage_objects " +
+                   "WHERE path LIKE :prefix ESCAPE '!' AND blob_key IS NOT NULL " +
+                   "AND path <> ALL(CAST(:retained AS varchar[])) GROUP BY blob_key",
+           nativeQuery = true)
+    List<BlobReferences> countBlobReferencesByPathPrefixAndPathNotIn(@Param("prefix") String prefix,
+                                                                     @Param("retained") String[] retained);
+
+    @Query("SELECT COALESCE(SUM(o.size), 0) AS bytes, COUNT(o) AS objects FROM StorageObject o " +
+           "WHERE o.path LIKE :prefix ESCAPE '!' AND o.type = :type")
+    StorageTotals sumByPathPrefixAndType(@Param("prefix") String prefix, @Param("type") ResourceType type);
+
+    @Query(value = "SELECT COALESCE(SUM(size), 0) AS bytes, COUNT(*) AS objects FROM storage_objects " +
+                   "WHERE path LIKE :prefix ESCAPE '!' AND type = :type " +
+                   "AND path <> ALL(CAST(:retained AS varchar[]))",
+           nativeQuery = true)
+    StorageTotals sumByPathPrefixAndTypeAndPathNotIn(@Param("prefix") String prefix,
+                                                     @Param("type") String type,
+                                                     @Param("retained") String[] retained);
+
+    Window<StorageObject> findByParent(String parent, ScrollPosition position, Sort sort, Limit limit);
+
+    //Поиск идет по составному GIN-индексу (корень пользователя, lower(name)), поэтому чужие файлы
+    //с похожими именами не читаются. pattern уже в нижнем регистре и экранирован
+    @Query(value = "SELECT * FROM storage_objects WHERE split_part(path, '/', 1) = :owner " +
+                   "AND path LIKE :prefix ESCAPE '!' AND path <> :root " +
+                   "AND lower(name) LIKE :pattern ESCAPE '!' ORDER BY name LIMIT :limit",
+           nativeQuery = true)
+    List<StorageObject> searchByName(@Param("owner") String owner,
+                                     @Param("prefix") String prefix,
+                                     @Param("root") String root,
+                                     @Param("pattern") String pattern,
+                                     @Param("limit") int limit);
+
+    //Строку, уже записанную другой транзакцией, не трогает; возвращает число вставленных строк
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO storage_objects (path, parent, name, type, size, etag, last_modified) " +
+                   "VALUES (:path, :parent, :name, :type, :size, :etag, :lastModified) " +
+                   "ON CONFLICT (path) DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("path") String path,
+                       @Param("parent") String parent,
+                       @Param("name") String name,
+                       @Param("type") String type,
+                       @Param("size") long size,
+                       @Param("etag") String etag,
+                       @Param("lastModified") Instant lastModified);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM StorageObject o WHERE o.path = :path")
+    int deleteByPath(@Param("path") String path);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM StorageObject o WHERE o.path IN :paths")
+    int deleteAllByPathIn(@Param("paths") Collection<String> paths);
+
+    //prefix должен быть уже экранирован для LIKE (escape-символ '!')
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM StorageObject o WHERE o.path LIKE :prefix ESCAPE '!'")
+    int deleteAllByPathPrefix(@Param("prefix") String prefix);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "DELETE FROM storage_objects WHERE path LIKE :prefix ESCAPE '!' " +
+                   "AND path <> ALL(CAST(:retained AS varchar[]))",
+           nativeQuery = true)
+    int deleteAllByPathPrefixAndPathNotIn(@Param("prefix") String prefix,
+                                          @Param("retained") String[] retained);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE StorageObject o SET " +
+           "o.path = CONCAT(:to, SUBSTRING(o.path, :fromEnd)), " +
+           "o.parent = CASE WHEN o.path = :from THEN :toParent ELSE CONCAT(:to, SUBSTRING(o.parent, :fromEnd)) END, " +
+           "o.name = CASE WHEN o.path = :from THEN :toName ELSE o.name END " +
+           "WHERE o.path LIKE :prefix ESCAPE '!'")
+    int moveAllByPathPrefix(@Param("prefix") String prefix,
+                            @Param("from") String from,
+                            @Param("fromEnd") int fromEnd,
+                            @Param("to") String to,
+                            @Param("toParent") String toParent,
+                            @Param("toName") String toName);
+}
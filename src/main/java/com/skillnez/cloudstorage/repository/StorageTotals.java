@@ -0,0 +1,8 @@
+package com.skillnez.cloudstorage.repository;
+
+public interface StorageTotals {
+
+    Long getBytes();
+
+    Long getObjects();
+}
@@ -0,0 +1,28 @@
+package com.skillnez.cloudstorage.repository;
+
+import com.skillnez.cloudstorage.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    Optional<UploadSession> findByIdAndUserId(String id, Long userId);
+
+    List<UploadSession> findAllByUpdatedAtBefore(Instant threshold);
+
+    //Число удаленных строк: резерв сессии снимает только тот, кто ее действительно удалил
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM UploadSession s WHERE s.id = :id")
+    int deleteSession(@Param("id") String id);
+
+}
@@ -1,6 +1,7 @@
 package com.skillnez.cloudstorage.repository;
 
 import com.skillnez.cloudstorage.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,6 +10,8 @@ import java.util.Optional;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
+    //Роли забираются тем же запросом, без второго select по user_roles
+    @EntityGraph(attributePaths = "roles")
     User findByUsername(String username);
 
 }
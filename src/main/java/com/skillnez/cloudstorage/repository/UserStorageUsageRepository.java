@@ -0,0 +1,42 @@
+package com.skillnez.cloudstorage.repository;
+
+import com.skillnez.cloudstorage.entity.UserStorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface UserStorageUsageRepository extends JpaRepository<UserStorageUsage, Long> {
+
+    //Атомарное приращение счетчиков, строка создается при первом изменении
+    @Modifying
+    @Query(value = "INSERT INTO user_storage_usage (user_id, used_bytes, object_count) " +
+                   "VALUES (:userId, :bytes, :objects) " +
+                   "ON CONFLICT (user_id) DO UPDATE SET " +
+                   "used_bytes = user_storage_usage.used_bytes + EXCLUDED.used_bytes, " +
+                   "object_count = user_storage_usage.object_count + EXCLUDED.object_count",
+           nativeQuery = true)
+    int addUsage(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("objects") long objects);
+
+    //Резерв места под загрузку: проверка квоты и приращение одним условным upsert, 0 - квота не позволяет.
+    //Отдельная транзакция, чтобы резерв сразу видели параллельные загрузки
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "INSERT INTO user_storage_usage (user_id, used_bytes, object_count) " +
+                   "SELECT :userId, :bytes, 0 WHERE :bytes <= :quota " +
+                   "ON CONFLICT (user_id) DO UPDATE SET " +
+                   "used_bytes = user_storage_usage.used_bytes + EXCLUDED.used_bytes " +
+                   "WHERE user_storage_usage.used_bytes + EXCLUDED.used_bytes <= :quota",
+           nativeQuery = true)
+    int tryReserve(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("quota") long quota);
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE user_storage_usage SET used_bytes = used_bytes - :bytes WHERE user_id = :userId",
+           nativeQuery = true)
+    int release(@Param("userId") Long userId, @Param("bytes") long bytes);
+}
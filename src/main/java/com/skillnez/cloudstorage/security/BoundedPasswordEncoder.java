@@ -0,0 +1,112 @@
+package com.skillnez.cloudstorage.security;
+
+import com.skillnez.cloudstorage.exception.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt на отдельном пуле фиксированного размера с ограниченной очередью, а не на потоках Tomcat.
+ * Всплеск входов занимает только этот пул: когда очередь полна, хеширование сразу отклоняется
+ * {@link PasswordHashingRejectedException} (429), а файловые запросы продолжают обслуживаться.
+ * Хеш с другой стоимостью считается устаревшим, и при входе пароль перехешируется
+ * через {@link UserDetailsService#updatePassword}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private static final String HASH_METRIC = "auth.password.hash";
+    private final BCryptPasswordEncoder bcrypt;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(int strength, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.bcrypt = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "password-hash");
+        this.encodeTimer = hashTimer(meterRegistry, "encode");
+        this.matchesTimer = hashTimer(meterRegistry, "matches");
+        this.rejected = Counter.builder(HASH_METRIC + ".rejected")
+                .description("Password hashing requests rejected because the queue was full")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> bcrypt.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> bcrypt.matches(rawPassword, encodedPassword));
+    }
+
+    //Хеш вида $2a$10$...: стоимость - две цифры после второго '$'
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(3) != '$') {
+            return bcrypt.upgradeEncoding(encodedPassword);
+        }
+        try {
+            return Integer.parseInt(encodedPassword, 4, 6, 10) != strength;
+        } catch (NumberFormatException e) {
+            return bcrypt.upgradeEncoding(encodedPassword);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    //Таймер учитывает и ожидание в очереди: это то, что видит пользователь
+    private <T> T run(Timer timer, Callable<T> hashing) {
+        long start = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(hashing);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordHashingRejectedException("Too many sign-in attempts, try again later");
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingRejectedException("Password hashing was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder(HASH_METRIC)
+                .description("Password hashing latency including queueing")
+                .tag("operation", operation)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
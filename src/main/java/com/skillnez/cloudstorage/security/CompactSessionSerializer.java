@@ -0,0 +1,158 @@
+package com.skillnez.cloudstorage.security;
+
+import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сериализатор атрибутов сессии в Redis. Контекст безопасности с {@link CustomUserDetails},
+ * а также служебные Long/Integer/String сессии пишутся в короткий бинарный формат с байтом-тегом.
+ * Все остальное, включая контексты других видов, уходит в JDK-сериализацию. Поток JDK начинается
+ * с 0xAC, поэтому сессии, записанные до перехода на этот формат, читаются без миграции.
+ * Пароль в сессию не попадает: после аутентификации он уже стерт.
+ */
+public class CompactSessionSerializer implements RedisSerializer<Object> {
+
+    private static final byte SECURITY_CONTEXT = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte STRING = 4;
+    private static final int MAX_UTF_LENGTH = 65535;
+    private static final int ENABLED = 1;
+    private static final int ACCOUNT_NON_EXPIRED = 1 << 1;
+    private static final int CREDENTIALS_NON_EXPIRED = 1 << 2;
+    private static final int ACCOUNT_NON_LOCKED = 1 << 3;
+
+    private final JdkSerializationRedisSerializer fallback;
+
+    public CompactSessionSerializer(ClassLoader classLoader) {
+        this.fallback = new JdkSerializationRedisSerializer(classLoader);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            switch (value) {
+                case SecurityContext context when isCompact(context) -> writeContext(context, out);
+                case Long longValue -> {
+                    out.writeByte(LONG);
+                    out.writeLong(longValue);
+                }
+                case Integer intValue -> {
+                    out.writeByte(INTEGER);
+                    out.writeInt(intValue);
+                }
+                case String stringValue when fitsWriteUtf(stringValue) -> {
+                    out.writeByte(STRING);
+                    out.writeUTF(stringValue);
+                }
+                default -> {
+                    return fallback.serialize(value);
+                }
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Cannot serialize session attribute", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] < SECURITY_CONTEXT || bytes[0] > STRING) {
+            return fallback.deserialize(bytes);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            return switch (bytes[0]) {
+                case SECURITY_CONTEXT -> readContext(in);
+                case LONG -> in.readLong();
+                case INTEGER -> in.readInt();
+                default -> in.readUTF();
+            };
+        } catch (IOException e) {
+            throw new SerializationException("Cannot deserialize session attribute", e);
+        }
+    }
+
+    //writeUTF пишет длину в два байта: строки длиннее 65535 байт в modified UTF-8 уходят в JDK-сериализацию
+    private static boolean fitsWriteUtf(String value) {
+        if (value.length() > MAX_UTF_LENGTH) {
+            return false;
+        }
+        if (value.length() * 3 <= MAX_UTF_LENGTH) {
+            return true;
+        }
+        long encodedLength = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            encodedLength += (c >= 0x0001 && c <= 0x007F) ? 1 : (c <= 0x07FF ? 2 : 3);
+        }
+        return encodedLength <= MAX_UTF_LENGTH;
+    }
+
+    //Только то, что создает AuthController: токен с CustomUserDetails без пароля и без details
+    private static boolean isCompact(SecurityContext context) {
+        Authentication authentication = context.getAuthentication();
+        return context.getClass() == SecurityContextImpl.class
+               && authentication != null
+               && authentication.getClass() == UsernamePasswordAuthenticationToken.class
+               && authentication.isAuthenticated()
+               && authentication.getCredentials() == null
+               && authentication.getDetails() == null
+               && authentication.getPrincipal() instanceof CustomUserDetails principal
+               && principal.getPassword() == null
+               && principal.getId() != null
+               && principal.getAuthorities().equals(authentication.getAuthorities());
+    }
+
+    private static void writeContext(SecurityContext context, DataOutputStream out) throws IOException {
+        CustomUserDetails principal = (CustomUserDetails) context.getAuthentication().getPrincipal();
+        out.writeByte(SECURITY_CONTEXT);
+        out.writeLong(principal.getId());
+        out.writeUTF(principal.getUsername());
+        out.writeByte((principal.isEnabled() ? ENABLED : 0)
+                      | (principal.isAccountNonExpired() ? ACCOUNT_NON_EXPIRED : 0)
+                      | (principal.isCredentialsNonExpired() ? CREDENTIALS_NON_EXPIRED : 0)
+                      | (principal.isAccountNonLocked() ? ACCOUNT_NON_LOCKED : 0));
+        out.writeShort(principal.getAuthorities().size());
+        for (GrantedAuthority authority : principal.getAuthorities()) {
+            out.writeUTF(authority.getAuthority());
+        }
+    }
+
+    private static SecurityContext readContext(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        String username = in.readUTF();
+        int flags = in.readByte();
+        int authorityCount = in.readUnsignedShort();
+        List<GrantedAuthority> authorities = new ArrayList<>(authorityCount);
+        for (int i = 0; i < authorityCount; i++) {
+            authorities.add(new SimpleGrantedAuthority(in.readUTF()));
+        }
+        CustomUserDetails principal = new CustomUserDetails(id, username, null,
+                (flags & ENABLED) != 0, (flags & ACCOUNT_NON_EXPIRED) != 0,
+                (flags & CREDENTIALS_NON_EXPIRED) != 0, (flags & ACCOUNT_NON_LOCKED) != 0, authorities);
+        return new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(principal, null, authorities));
+    }
+}
@@ -0,0 +1,53 @@
+package com.skillnez.cloudstorage.security;
+
+import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+//Аутентифицирует запрос по заголовку "Authorization: Bearer <access token>" без обращения к сессии.
+//Не бин: иначе Spring Boot зарегистрировал бы его сервлетным фильтром вне цепочки безопасности
+@Slf4j
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private final TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            try {
+                TokenService.TokenClaims claims =
+                        tokenService.verify(header.substring(BEARER_PREFIX.length()), TokenService.ACCESS);
+                CustomUserDetails principal = claims.toUserDetails();
+                UsernamePasswordAuthenticationToken authentication =
+                        UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities());
+                //По claims выход находит, какой вход отозвать
+                authentication.setDetails(claims);
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(authentication);
+                SecurityContextHolder.setContext(context);
+            } catch (AuthenticationException e) {
+                SecurityContextHolder.clearContext();
+                log.debug("Rejected access token: {}", e.getMessage());
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
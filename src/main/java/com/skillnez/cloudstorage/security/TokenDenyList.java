@@ -0,0 +1,88 @@
+package com.skillnez.cloudstorage.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отозванные токены и входы: id -> момент, после которого запись не нужна (секунды эпохи).
+ * Проверка идет по локальной копии в памяти. Отзыв пишется в sorted set Redis для узлов, которые стартуют позже,
+ * и рассылается остальным узлам через pub/sub. Записи удаляются, как только истекает то, что они отзывают.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "auth.token.enabled", havingValue = "true")
+public class TokenDenyList implements MessageListener {
+
+    public static final String CHANNEL = "cloudstorage:token-revoked";
+    private static final String KEY = "cloudstorage:token-deny-list";
+    private final StringRedisTemplate redisTemplate;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TokenDenyList(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+        long now = Instant.now().getEpochSecond();
+        redisTemplate.opsForZSet().removeRangeByScore(KEY, 0, now);
+        Set<ZSetOperations.TypedTuple<String>> stored =
+                redisTemplate.opsForZSet().rangeByScoreWithScores(KEY, now, Double.MAX_VALUE);
+        if (stored != null) {
+            stored.forEach(entry -> revoked.put(entry.getValue(), entry.getScore().longValue()));
+        }
+        log.info("Loaded {} revoked token entries", revoked.size());
+    }
+
+    public boolean isRevoked(String id) {
+        Long expiresAt = revoked.get(id);
+        return expiresAt != null && expiresAt > Instant.now().getEpochSecond();
+    }
+
+    public void revoke(String id, long expiresAt) {
+        revoked.put(id, expiresAt);
+        redisTemplate.opsForZSet().add(KEY, id, expiresAt);
+        redisTemplate.convertAndSend(CHANNEL, id + " " + expiresAt);
+    }
+
+    /**
+     * Отзывает id, только если его еще никто не отозвал. Проверку и запись делает один ZADD NX в Redis,
+     * поэтому из параллельных запросов, даже на разных узлах, успешным будет ровно один.
+     *
+     * @return false, если id уже был отозван
+     */
+    public boolean revokeOnce(String id, long expiresAt) {
+        if (!Boolean.TRUE.equals(redisTemplate.opsForZSet().addIfAbsent(KEY, id, expiresAt))) {
+            return false;
+        }
+        revoked.put(id, expiresAt);
+        redisTemplate.convertAndSend(CHANNEL, id + " " + expiresAt);
+        return true;
+    }
+
+    //Сообщение другого узла: "<id> <expiresAt>"
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] entry = new String(message.getBody(), StandardCharsets.UTF_8).split(" ");
+        if (entry.length == 2) {
+            revoked.put(entry[0], Long.parseLong(entry[1]));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.token.deny-list-cleanup-interval:PT5M}")
+    public void removeExpired() {
+        long now = Instant.now().getEpochSecond();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        redisTemplate.opsForZSet().removeRangeByScore(KEY, 0, now);
+    }
+}
@@ -0,0 +1,189 @@
+package com.skillnez.cloudstorage.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skillnez.cloudstorage.dto.TokenResponseDto;
+import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Подписанные токены доступа и обновления для режима {@code auth.token.enabled=true}.
+ * Токен - {@code base64url(json).base64url(HMAC-SHA256)}; в нем id пользователя, имя и роли,
+ * поэтому проверка запроса не ходит ни в Redis, ни в базу. Пара токенов одного входа делит
+ * {@code sid}: выход отзывает весь вход сразу, обновление отзывает использованный токен обновления.
+ */
+@Service
+@ConditionalOnProperty(name = "auth.token.enabled", havingValue = "true")
+public class TokenService {
+
+    public static final String ACCESS = "access";
+    public static final String REFRESH = "refresh";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final AccountStatusUserDetailsChecker USER_STATUS_CHECKER = new AccountStatusUserDetailsChecker();
+
+    private final ObjectMapper objectMapper;
+    private final TokenDenyList tokenDenyList;
+    private final UserDetailsService userDetailsService;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac;
+    private final Duration accessTtl;
+    private final Duration refreshTtl;
+
+    @Autowired
+    public TokenService(ObjectMapper objectMapper, TokenDenyList tokenDenyList,
+                        UserDetailsService userDetailsService,
+                        @Value("${auth.token.secret:}") String secret,
+                        @Value("${auth.token.access-ttl:PT15M}") Duration accessTtl,
+                        @Value("${auth.token.refresh-ttl:P7D}") Duration refreshTtl) {
+        this.objectMapper = objectMapper;
+        this.tokenDenyList = tokenDenyList;
+        this.userDetailsService = userDetailsService;
+        this.key = new SecretKeySpec(secretBytes(secret), ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+        this.accessTtl = accessTtl;
+        this.refreshTtl = refreshTtl;
+    }
+
+    //sub - id пользователя, sid - вход, jti - сам токен, exp - секунды эпохи
+    public record TokenClaims(String typ, String jti, String sid, Long sub, String usr, List<String> rol, long exp) {
+
+        public CustomUserDetails toUserDetails() {
+            List<GrantedAuthority> authorities = rol.stream()
+                    .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                    .toList();
+            return new CustomUserDetails(sub, usr, null, true, true, true, true, authorities);
+        }
+    }
+
+    public TokenResponseDto issue(CustomUserDetails user) {
+        List<String> roles = user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        return issue(UUID.randomUUID().toString(), user.getId(), user.getUsername(), roles);
+    }
+
+    /**
+     * Токен обновления одноразовый: из параллельных обновлений одним токеном проходит только одно.
+     * Новая пара строится по текущему состоянию пользователя, а не по старым claims: удаленный,
+     * переименованный или заблокированный пользователь обновиться не сможет, смена ролей подхватится.
+     */
+    public TokenResponseDto refresh(String refreshToken) {
+        TokenClaims claims = verify(refreshToken, REFRESH);
+        if (!tokenDenyList.revokeOnce(claims.jti(), claims.exp())) {
+            throw new BadCredentialsException("Token revoked");
+        }
+        CustomUserDetails user;
+        try {
+            user = userDetailsService.loadUserByUsername(claims.usr());
+        } catch (UsernameNotFoundException e) {
+            throw new BadCredentialsException("User not found");
+        }
+        if (!claims.sub().equals(user.getId())) {
+            throw new BadCredentialsException("User not found");
+        }
+        USER_STATUS_CHECKER.check(user);
+        List<String> roles = user.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        return issue(claims.sid(), user.getId(), user.getUsername(), roles);
+    }
+
+    public TokenClaims verify(String token, String expectedType) {
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) {
+            throw new BadCredentialsException("Malformed token");
+        }
+        String payload = token.substring(0, dot);
+        byte[] signature;
+        try {
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            throw new BadCredentialsException("Malformed token");
+        }
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            throw new BadCredentialsException("Invalid token signature");
+        }
+        TokenClaims claims;
+        try {
+            claims = objectMapper.readValue(DECODER.decode(payload), TokenClaims.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new BadCredentialsException("Malformed token");
+        }
+        if (!expectedType.equals(claims.typ()) || claims.sub() == null || claims.rol() == null) {
+            throw new BadCredentialsException("Unexpected token type");
+        }
+        if (claims.exp() <= Instant.now().getEpochSecond()) {
+            throw new BadCredentialsException("Token expired");
+        }
+        if (tokenDenyList.isRevoked(claims.jti()) || tokenDenyList.isRevoked(claims.sid())) {
+            throw new BadCredentialsException("Token revoked");
+        }
+        return claims;
+    }
+
+    //Отзывает вход целиком: запись живет, пока может быть жив его токен обновления
+    public void revokeSession(TokenClaims claims) {
+        tokenDenyList.revoke(claims.sid(), Instant.now().plus(refreshTtl).getEpochSecond());
+    }
+
+    private TokenResponseDto issue(String sessionId, Long userId, String username, List<String> roles) {
+        Instant now = Instant.now();
+        String accessToken = encode(new TokenClaims(ACCESS, UUID.randomUUID().toString(), sessionId, userId, username,
+                roles, now.plus(accessTtl).getEpochSecond()));
+        String refreshToken = encode(new TokenClaims(REFRESH, UUID.randomUUID().toString(), sessionId, userId, username,
+                roles, now.plus(refreshTtl).getEpochSecond()));
+        return new TokenResponseDto(username, accessToken, refreshToken, accessTtl.toSeconds());
+    }
+
+    private String encode(TokenClaims claims) {
+        try {
+            String payload = ENCODER.encodeToString(objectMapper.writeValueAsBytes(claims));
+            return payload + "." + ENCODER.encodeToString(sign(payload));
+        } catch (IOException e) {
+            throw new IllegalStateException("Token can't be serialized", e);
+        }
+    }
+
+    private byte[] sign(String payload) {
+        return mac.get().doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    //Без общего секрета токены одного узла не примут другие узлы и не переживут перезапуск, поэтому узел не стартует
+    private static byte[] secretBytes(String secret) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("auth.token.secret is required when auth.token.enabled=true");
+        }
+        byte[] decoded = Base64.getDecoder().decode(secret);
+        if (decoded.length < 32) {
+            throw new IllegalStateException("auth.token.secret must be at least 256 bits");
+        }
+        return decoded;
+    }
+}
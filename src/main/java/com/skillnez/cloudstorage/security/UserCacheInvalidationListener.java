@@ -0,0 +1,27 @@
+package com.skillnez.cloudstorage.security;
+
+import com.skillnez.cloudstorage.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+//JPA-слушатель User: Hibernate берет его из контекста Spring. UserDetailsService достается лениво,
+//потому что слушатель создается вместе с EntityManagerFactory, от которой сам сервис и зависит
+@Component
+public class UserCacheInvalidationListener {
+
+    private final ObjectProvider<UserDetailsService> userDetailsService;
+
+    @Autowired
+    public UserCacheInvalidationListener(ObjectProvider<UserDetailsService> userDetailsService) {
+        this.userDetailsService = userDetailsService;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onUserChanged(User user) {
+        userDetailsService.ifAvailable(service -> service.evict(user.getId()));
+    }
+}
@@ -1,27 +1,57 @@
 package com.skillnez.cloudstorage.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.skillnez.cloudstorage.entity.CustomUserDetails;
 import com.skillnez.cloudstorage.entity.User;
 import com.skillnez.cloudstorage.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Загрузка пользователя для аутентификации с ограниченным кэшем в памяти процесса.
+ * В кэше лежит неизменяемый снимок пользователя, а наружу каждый раз отдается новый {@link CustomUserDetails}:
+ * после входа ProviderManager стирает в нем пароль. Запись сбрасывается при изменении пользователя
+ * (см. {@link UserCacheInvalidationListener}), изменения с других узлов видны не позже чем через ttl.
+ */
 @Service
-@Transactional
-public class UserDetailsService implements org.springframework.security.core.userdetails.UserDetailsService {
+public class UserDetailsService implements org.springframework.security.core.userdetails.UserDetailsService,
+        UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final Cache<String, CachedUser> users;
 
     @Autowired
-    public UserDetailsService(UserRepository userRepository) {
+    public UserDetailsService(UserRepository userRepository, MeterRegistry meterRegistry,
+                              @Value("${auth.user-cache.max-size:10000}") long maxSize,
+                              @Value("${auth.user-cache.ttl:PT5M}") Duration ttl) {
         this.userRepository = userRepository;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+    }
+
+    private record CachedUser(Long id, String username, String password, boolean enabled,
+                              boolean accountNonExpired, boolean credentialsNonExpired, boolean accountNonLocked,
+                              List<GrantedAuthority> authorities) {
     }
 
     private static List<GrantedAuthority> getAuthorities(List<String> roles) {
@@ -29,16 +59,57 @@ public class UserDetailsService implements org.springframework.security.core.use
         for (String role : roles) {
             authorities.add(new SimpleGrantedAuthority(role));
         }
-        return authorities;
+        return List.copyOf(authorities);
     }
 
     @Override
     public CustomUserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username);
+        CachedUser user = users.get(username, this::findUser);
         if (user == null) {
             throw new UsernameNotFoundException("User with username " + username + " not found");
         }
-        return new CustomUserDetails(user.getId(),user.getUsername(), user.getPassword(),
+        return new CustomUserDetails(user.id(), user.username(), user.password(),
+                user.enabled(), user.accountNonExpired(),
+                user.credentialsNonExpired(), user.accountNonLocked(), user.authorities());
+    }
+
+    //Вызывается после успешного входа, если хеш пароля записан с другой стоимостью BCrypt
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername());
+        if (user == null) {
+            throw new UsernameNotFoundException("User with username " + userDetails.getUsername() + " not found");
+        }
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        return new CustomUserDetails(user.getId(), user.getUsername(), newPassword,
+                user.isEnabled(), user.isAccountNonExpired(),
+                user.isCredentialsNonExpired(), user.isAccountNonLocked(), getAuthorities(user.getRoles()));
+    }
+
+    //Сбрасывается по id, а не по имени: при переименовании старое имя тоже должно уйти из кэша
+    public void evict(Long userId) {
+        Runnable eviction = () -> users.asMap().values().removeIf(user -> user.id().equals(userId));
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            //Повторно после коммита: загрузка между flush и коммитом могла положить в кэш старую версию
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    //Отсутствующий пользователь не кэшируется, чтобы только что зарегистрированный сразу мог войти
+    private CachedUser findUser(String username) {
+        User user = userRepository.findByUsername(username);
+        if (user == null) {
+            return null;
+        }
+        return new CachedUser(user.getId(), user.getUsername(), user.getPassword(),
                 user.isEnabled(), user.isAccountNonExpired(),
                 user.isCredentialsNonExpired(), user.isAccountNonLocked(), getAuthorities(user.getRoles()));
     }
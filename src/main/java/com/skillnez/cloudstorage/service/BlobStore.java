@@ -0,0 +1,126 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.entity.ContentBlob;
+import com.skillnez.cloudstorage.exception.UploadErrorException;
+import com.skillnez.cloudstorage.repository.ContentBlobRepository;
+import com.skillnez.cloudstorage.utils.CountingInputStream;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Хранилище содержимого с дедупликацией: файл хешируется (SHA-256) прямо во время загрузки
+ * во временный объект и хранится один раз под ключом {@code blobs/{sha256}}.
+ * Пути пользователей ссылаются на блоб через {@code storage_objects.blob_key},
+ * блобы без ссылок удаляются сборщиком.
+ */
+@Slf4j
+@Service
+@Transactional
+public class BlobStore {
+
+    private static final String BLOB_ROOT = "blobs/";
+    private static final String STAGING_ROOT = "blob-staging/";
+    private final ContentBlobRepository contentBlobRepository;
+    private final StorageBackend storageBackend;
+    @Value("${storage.dedup.enabled:false}")
+    private boolean enabled;
+    @Value("${storage.dedup.gc-batch-size:100}")
+    private int gcBatchSize;
+    @Value("${storage.dedup.staging-ttl:PT1H}")
+    private Duration stagingTtl;
+
+    @Autowired
+    public BlobStore(ContentBlobRepository contentBlobRepository, StorageBackend storageBackend) {
+        this.contentBlobRepository = contentBlobRepository;
+        this.storageBackend = storageBackend;
+    }
+
+    public record StoredBlob(String key, long size, String etag) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //size = -1, если размер заранее неизвестен. Загрузка идет вне транзакции, чтобы не держать соединение с базой
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public StoredBlob store(InputStream stream, long size, String contentType) {
+        String stagingKey = STAGING_ROOT + UUID.randomUUID();
+        DigestInputStream digestStream = new DigestInputStream(stream, sha256());
+        CountingInputStream countingStream = new CountingInputStream(digestStream);
+        String stagingEtag = storageBackend.putObject(stagingKey, countingStream, size, contentType);
+        String blobKey = BLOB_ROOT + HexFormat.of().formatHex(digestStream.getMessageDigest().digest());
+        try {
+            if (contentBlobRepository.incrementRefCount(blobKey) == 0) {
+                //Новое содержимое: серверная копия под ключ блоба, затем регистрация ссылки
+                storageBackend.composeObject(blobKey, List.of(stagingKey), contentType);
+                contentBlobRepository.insertOrIncrementRefCount(blobKey, countingStream.getCount());
+            } else {
+                log.debug("Deduplicated upload into {}", blobKey);
+            }
+        } finally {
+            storageBackend.removeObject(stagingKey);
+        }
+        return new StoredBlob(blobKey, countingStream.getCount(), stagingEtag);
+    }
+
+    public void retain(String blobKey) {
+        if (contentBlobRepository.incrementRefCount(blobKey) == 0) {
+            throw new IllegalStateException("Blob is missing: " + blobKey);
+        }
+    }
+
+    public void release(String blobKey, long references) {
+        contentBlobRepository.decrementRefCount(blobKey, references);
+    }
+
+    @Scheduled(fixedDelayString = "${storage.dedup.gc-interval:PT10M}")
+    public void collectGarbage() {
+        if (!enabled) {
+            return;
+        }
+        //Временные объекты, оставшиеся после падения посреди загрузки
+        Instant threshold = Instant.now().minus(stagingTtl);
+        Iterator<StorageBackend.StoredObject> staged =
+                storageBackend.listObjects(STAGING_ROOT, FolderTraversalMode.RECURSIVE);
+        while (staged.hasNext()) {
+            StorageBackend.StoredObject object = staged.next();
+            if (object.lastModified() != null && object.lastModified().isBefore(threshold)) {
+                storageBackend.removeObject(object.key());
+            }
+        }
+        List<ContentBlob> unreferenced = contentBlobRepository.lockUnreferenced(gcBatchSize);
+        for (ContentBlob blob : unreferenced) {
+            storageBackend.removeObject(blob.getKey());
+            contentBlobRepository.delete(blob);
+        }
+        if (!unreferenced.isEmpty()) {
+            log.info("Removed {} unreferenced blobs", unreferenced.size());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new UploadErrorException("SHA-256 is not available");
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.dto.BulkOperationDto;
+import com.skillnez.cloudstorage.dto.BulkOperationResultDto;
+import com.skillnez.cloudstorage.dto.BulkOperationStatus;
+import com.skillnez.cloudstorage.dto.BulkOperationType;
+import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import com.skillnez.cloudstorage.entity.StorageObject;
+import com.skillnez.cloudstorage.exception.BadPathFormatException;
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import com.skillnez.cloudstorage.utils.PathUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетные удаление, перемещение и копирование из одного запроса.
+ * Операции проверяются вместе: пересекающиеся пути в одном запросе отклоняются, удаляемые файлы
+ * ищутся в индексе одной выборкой и удаляются одним multi-object delete. Папки, перемещения и копирования
+ * выполняются параллельно. Ошибка одной операции не прерывает остальные, результаты идут в порядке запроса.
+ */
+@Slf4j
+@Service
+public class BulkOperationService {
+
+    private final FileSystemService fileSystemService;
+    private final StorageMetadataService storageMetadataService;
+    private final StorageBackend storageBackend;
+    private final Executor storageJobExecutor;
+    private final MoveOperationRegistry moveOperationRegistry;
+    @Value("${storage.bulk.parallelism:8}")
+    private int parallelism;
+
+    @Autowired
+    public BulkOperationService(FileSystemService fileSystemService, StorageMetadataService storageMetadataService,
+                                StorageBackend storageBackend,
+                                @Qualifier("storageJobExecutor") Executor storageJobExecutor,
+                                MoveOperationRegistry moveOperationRegistry) {
+        this.fileSystemService = fileSystemService;
+        this.storageMetadataService = storageMetadataService;
+        this.storageBackend = storageBackend;
+        this.storageJobExecutor = storageJobExecutor;
+        this.moveOperationRegistry = moveOperationRegistry;
+    }
+
+    private record PlannedOperation(int index, BulkOperationDto operation, String source, String target) {
+
+        boolean overlaps(PlannedOperation other) {
+            return overlaps(source, other.source) || overlaps(source, other.target)
+                   || overlaps(target, other.source) || overlaps(target, other.target);
+        }
+
+        private static boolean overlaps(String path, String otherPath) {
+            return path != null && otherPath != null && PathUtils.overlaps(path, otherPath);
+        }
+    }
+
+    public List<BulkOperationResultDto> execute(List<BulkOperationDto> operations, Long userId) {
+        storageMetadataService.ensureIndexed("user-" + userId + "-files/");
+        BulkOperationResultDto[] results = new BulkOperationResultDto[operations.size()];
+        List<PlannedOperation> accepted = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            BulkOperationDto operation = operations.get(i);
+            try {
+                PlannedOperation planned = plan(i, operation, userId);
+                if (accepted.stream().anyMatch(planned::overlaps)) {
+                    results[i] = failed(operation, "Path is used by another operation in this request");
+                } else {
+                    accepted.add(planned);
+                }
+            } catch (RuntimeException e) {
+                results[i] = failed(operation, e.getMessage());
+            }
+        }
+        List<PlannedOperation> fileDeletes = new ArrayList<>();
+        List<PlannedOperation> concurrent = new ArrayList<>();
+        for (PlannedOperation planned : accepted) {
+            boolean fileDelete = planned.operation().getType() == BulkOperationType.DELETE
+                                 && !planned.source().endsWith("/");
+            (fileDelete ? fileDeletes : concurrent).add(planned);
+        }
+        deleteFiles(fileDeletes, results);
+        runConcurrently(concurrent, results, userId);
+        return Arrays.asList(results);
+    }
+
+    private PlannedOperation plan(int index, BulkOperationDto operation, Long userId) {
+        if (operation.getType() == BulkOperationType.DELETE) {
+            String source = toBackendPath(operation.getPath(), "path", userId);
+            //Удаление файлов идет мимо FileSystemService, поэтому перенос папки проверяется здесь
+            moveOperationRegistry.checkNotMoving(source);
+            return new PlannedOperation(index, operation, source, null);
+        }
+        return new PlannedOperation(index, operation, toBackendPath(operation.getFrom(), "from", userId),
+                toBackendPath(operation.getTo(), "to", userId));
+    }
+
+    private static String toBackendPath(String path, String fieldName, Long userId) {
+        if (path == null) {
+            throw new BadPathFormatException("Field " + fieldName + " is required for this operation");
+        }
+        return PathUtils.formatPathForBackend(path, userId);
+    }
+
+    private void deleteFiles(List<PlannedOperation> fileDeletes, BulkOperationResultDto[] results) {
+        if (fileDeletes.isEmpty()) {
+            return;
+        }
+        Map<String, StorageObject> indexed = storageMetadataService
+                .findAll(fileDeletes.stream().map(PlannedOperation::source).toList()).stream()
+                .collect(Collectors.toMap(StorageObject::getPath, Function.identity()));
+        List<PlannedOperation> existing = new ArrayList<>();
+        for (PlannedOperation planned : fileDeletes) {
+            if (indexed.containsKey(planned.source())) {
+                existing.add(planned);
+            } else {
+                results[planned.index()] = failed(planned.operation(), "Path does not exist");
+            }
+        }
+        //Дедуплицированные файлы - только ссылки на блоб, в хранилище для них удалять нечего
+        Map<String, String> notRemoved = storageBackend.removeObjects(existing.stream()
+                .map(PlannedOperation::source)
+                .filter(path -> indexed.get(path).getBlobKey() == null)
+                .iterator());
+        List<PlannedOperation> removed = new ArrayList<>();
+        for (PlannedOperation planned : existing) {
+            String failure = notRemoved.get(planned.source());
+            if (failure == null) {
+                removed.add(planned);
+            } else {
+                results[planned.index()] = failed(planned.operation(), failure);
+            }
+        }
+        try {
+            storageMetadataService.removeAll(removed.stream().map(PlannedOperation::source).toList());
+            for (PlannedOperation planned : removed) {
+                results[planned.index()] = completed(planned.operation(), null);
+            }
+        } catch (RuntimeException e) {
+            log.error("Metadata of {} deleted files was not updated", removed.size(), e);
+            for (PlannedOperation planned : removed) {
+                results[planned.index()] = failed(planned.operation(), e.getMessage());
+            }
+        }
+        log.info("Bulk deleted {} of {} files", removed.size(), fileDeletes.size());
+    }
+
+    private void runConcurrently(List<PlannedOperation> operations, BulkOperationResultDto[] results, Long userId) {
+        Semaphore operationsInFlight = new Semaphore(parallelism);
+        List<CompletableFuture<Void>> running = new ArrayList<>(operations.size());
+        try {
+            for (PlannedOperation planned : operations) {
+                operationsInFlight.acquire();
+                running.add(CompletableFuture
+                        .runAsync(() -> results[planned.index()] = run(planned, userId), storageJobExecutor)
+                        .whenComplete((ignored, e) -> operationsInFlight.release()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MinioOperationException("Bulk operation interrupted: ", e);
+        } finally {
+            CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+        }
+    }
+
+    private BulkOperationResultDto run(PlannedOperation planned, Long userId) {
+        try {
+            StorageInfoResponseDto resource = switch (planned.operation().getType()) {
+                case DELETE -> {
+                    fileSystemService.delete(planned.source(), userId);
+                    yield null;
+                }
+                case MOVE -> fileSystemService.moveOrRename(planned.source(), planned.target(), userId);
+                case COPY -> fileSystemService.copy(planned.source(), planned.target(), userId);
+            };
+            return completed(planned.operation(), resource);
+        } catch (RuntimeException e) {
+            log.warn("Bulk {} of {} failed", planned.operation().getType(), planned.source(), e);
+            return failed(planned.operation(), e.getMessage());
+        }
+    }
+
+    private static BulkOperationResultDto completed(BulkOperationDto operation, StorageInfoResponseDto resource) {
+        return result(operation, BulkOperationStatus.COMPLETED, null, resource);
+    }
+
+    private static BulkOperationResultDto failed(BulkOperationDto operation, String message) {
+        return result(operation, BulkOperationStatus.FAILED, message, null);
+    }
+
+    private static BulkOperationResultDto result(BulkOperationDto operation, BulkOperationStatus status,
+                                                 String message, StorageInfoResponseDto resource) {
+        return BulkOperationResultDto.builder()
+                .type(operation.getType())
+                .path(operation.getPath())
+                .from(operation.getFrom())
+                .to(operation.getTo())
+                .status(status)
+                .message(message)
+                .resource(resource)
+                .build();
+    }
+}
@@ -0,0 +1,276 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.dto.PresignedUploadResponseDto;
+import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import com.skillnez.cloudstorage.dto.UploadSessionResponseDto;
+import com.skillnez.cloudstorage.entity.UploadSession;
+import com.skillnez.cloudstorage.exception.BadPathFormatException;
+import com.skillnez.cloudstorage.exception.FolderAlreadyExistsException;
+import com.skillnez.cloudstorage.exception.InvalidChunkException;
+import com.skillnez.cloudstorage.repository.UploadSessionRepository;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import com.skillnez.cloudstorage.utils.PathUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Возобновляемая загрузка по частям. Каждая часть сразу пишется во временный объект
+ * {@code uploads/{sessionId}/{номер части}}, при завершении части склеиваются на стороне хранилища
+ * через composeObject (в MinIO - multipart upload copy), поэтому на узле приложения ничего не буферизуется.
+ * Квота резервируется на весь размер файла при открытии сессии и держится, пока сессию не завершат,
+ * не отменят или не удалит очистка брошенных сессий.
+ */
+@Slf4j
+@Service
+public class ChunkedUploadService {
+
+    private static final String STAGING_ROOT = "uploads/";
+    private static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_CHUNKS = 10_000;
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    private final UploadSessionRepository uploadSessionRepository;
+    private final StorageBackend storageBackend;
+    private final StorageMetadataService storageMetadataService;
+    private final FileSystemService fileSystemService;
+    private final StorageUsageService storageUsageService;
+    private final StorageMetrics storageMetrics;
+    private final MoveOperationRegistry moveOperationRegistry;
+    @Value("${storage.chunked-upload.chunk-size:8388608}")
+    private long defaultChunkSize;
+    @Value("${storage.chunked-upload.session-ttl:PT24H}")
+    private Duration sessionTtl;
+    @Value("${storage.presigned.expiry:PT5M}")
+    private Duration presignedExpiry;
+
+    @Autowired
+    public ChunkedUploadService(UploadSessionRepository uploadSessionRepository,
+                                StorageBackend storageBackend,
+                                StorageMetadataService storageMetadataService,
+                                FileSystemService fileSystemService,
+                                StorageUsageService storageUsageService,
+                                StorageMetrics storageMetrics,
+                                MoveOperationRegistry moveOperationRegistry) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.storageBackend = storageBackend;
+        this.storageMetadataService = storageMetadataService;
+        this.fileSystemService = fileSystemService;
+        this.storageUsageService = storageUsageService;
+        this.storageMetrics = storageMetrics;
+        this.moveOperationRegistry = moveOperationRegistry;
+    }
+
+    public UploadSessionResponseDto createSession(String backendPath, long size, String contentType, Long userId) {
+        long chunkSize = Math.max(Math.max(defaultChunkSize, MIN_CHUNK_SIZE), ceilDiv(size, MAX_CHUNKS));
+        UploadSession uploadSession = openSession(backendPath, size, chunkSize, contentType, userId);
+        log.info("Chunked upload {} started for {}", uploadSession.getId(), backendPath);
+        return toResponseDto(uploadSession, new TreeMap<>());
+    }
+
+    /**
+     * Загрузка напрямую в хранилище - сессия из одной части. Подписанная форма пишет только во временный объект
+     * этой части и только ровно {@code size} байт, поэтому повтор формы не перезапишет готовый файл,
+     * а в индекс файл попадает через {@link #complete} с теми же проверками размера и квоты.
+     */
+    public PresignedUploadResponseDto createPresignedUpload(String backendPath, long size, String contentType,
+                                                            Long userId) {
+        fileSystemService.requirePresignedEnabled();
+        UploadSession uploadSession = openSession(backendPath, size, Math.max(size, 1), contentType, userId);
+        StorageBackend.PresignedPost form =
+                storageBackend.getPresignedPostForm(chunkPath(uploadSession.getId(), 1), size, presignedExpiry);
+        log.info("Presigned upload {} started for {}", uploadSession.getId(), backendPath);
+        return new PresignedUploadResponseDto(uploadSession.getId(), form.url(), form.formData(),
+                toUserPath(uploadSession), size, Instant.now().plus(presignedExpiry));
+    }
+
+    public void uploadChunk(String sessionId, int chunkNumber, InputStream chunk, long chunkLength, Long userId) {
+        UploadSession uploadSession = getSession(sessionId, userId);
+        int totalChunks = totalChunks(uploadSession);
+        if (chunkNumber < 1 || chunkNumber > totalChunks) {
+            throw new InvalidChunkException("Chunk number must be between 1 and " + totalChunks);
+        }
+        long expectedLength = expectedLength(uploadSession, chunkNumber);
+        if (chunkLength != expectedLength) {
+            throw new InvalidChunkException("Chunk " + chunkNumber + " must be exactly " + expectedLength + " bytes");
+        }
+        storageBackend.putObject(chunkPath(sessionId, chunkNumber), chunk, chunkLength, DEFAULT_CONTENT_TYPE);
+        storageMetrics.recordUpload(chunkLength);
+        uploadSession.setUpdatedAt(Instant.now());
+        uploadSessionRepository.save(uploadSession);
+    }
+
+    public UploadSessionResponseDto getStatus(String sessionId, Long userId) {
+        UploadSession uploadSession = getSession(sessionId, userId);
+        return toResponseDto(uploadSession, listReceivedChunks(sessionId));
+    }
+
+    public StorageInfoResponseDto complete(String sessionId, Long userId) {
+        UploadSession uploadSession = getSession(sessionId, userId);
+        TreeMap<Integer, Long> receivedChunks = listReceivedChunks(sessionId);
+        int totalChunks = totalChunks(uploadSession);
+        if (receivedChunks.size() != totalChunks) {
+            throw new InvalidChunkException("Received " + receivedChunks.size() + " of " + totalChunks + " chunks");
+        }
+        //Части, загруженные мимо uploadChunk, например подписанной формой, размер на входе не проверяли
+        for (int chunkNumber = 1; chunkNumber <= totalChunks; chunkNumber++) {
+            long expectedLength = expectedLength(uploadSession, chunkNumber);
+            Long receivedLength = receivedChunks.get(chunkNumber);
+            if (receivedLength == null || receivedLength != expectedLength) {
+                storageBackend.removeObject(chunkPath(sessionId, chunkNumber));
+                throw new InvalidChunkException("Chunk " + chunkNumber + " must be exactly " + expectedLength + " bytes");
+            }
+        }
+        String backendPath = uploadSession.getPath();
+        moveOperationRegistry.checkNotMoving(backendPath);
+        if (storageMetadataService.exists(backendPath)) {
+            throw new FolderAlreadyExistsException
+                    ("Cant upload file, because file or folder with this name already exists in target directory");
+        }
+        List<String> chunkPaths = new ArrayList<>(totalChunks);
+        for (int chunkNumber = 1; chunkNumber <= totalChunks; chunkNumber++) {
+            chunkPaths.add(chunkPath(sessionId, chunkNumber));
+        }
+        //Место уже занято резервом сессии; добирается только разница, если квоту включили после ее открытия.
+        //Резерв сессии снимается в discard, когда файл уже учтен в индексе
+        try (StorageUsageService.Reservation reservation = storageUsageService
+                .reserve(userId, uploadSession.getSize() - uploadSession.getReservedBytes())) {
+            fileSystemService.createParentFolders(backendPath);
+            String etag = (uploadSession.getSize() == 0)
+                    ? storageBackend.putObject(backendPath, InputStream.nullInputStream(), 0, uploadSession.getContentType())
+                    : storageBackend.composeObject(backendPath, chunkPaths, uploadSession.getContentType());
+            storageMetadataService.recordFile(backendPath, uploadSession.getSize(), etag);
+        }
+        discard(uploadSession);
+        log.info("Chunked upload {} completed: {}", sessionId, backendPath);
+        return PathUtils.formStorageInfoResponseDto(backendPath, uploadSession.getSize());
+    }
+
+    public void abort(String sessionId, Long userId) {
+        discard(getSession(sessionId, userId));
+        log.info("Chunked upload {} aborted", sessionId);
+    }
+
+    @Scheduled(fixedDelayString = "${storage.chunked-upload.cleanup-interval:PT1H}")
+    public void removeAbandonedUploads() {
+        for (UploadSession uploadSession : uploadSessionRepository.findAllByUpdatedAtBefore(Instant.now().minus(sessionTtl))) {
+            log.info("Removing abandoned chunked upload {} for {}", uploadSession.getId(), uploadSession.getPath());
+            discard(uploadSession);
+        }
+        //Части, оставшиеся после падения между удалением сессии и удалением временных объектов
+        Iterator<StorageBackend.StoredObject> stagingFolders =
+                storageBackend.listObjects(STAGING_ROOT, FolderTraversalMode.NON_RECURSIVE);
+        while (stagingFolders.hasNext()) {
+            String stagingFolder = stagingFolders.next().key();
+            String sessionId = stagingFolder.substring(STAGING_ROOT.length(), stagingFolder.length() - 1);
+            if (!uploadSessionRepository.existsById(sessionId)) {
+                storageBackend.removeObjectsByPrefix(stagingFolder);
+            }
+        }
+    }
+
+    private UploadSession openSession(String backendPath, long size, long chunkSize, String contentType, Long userId) {
+        if (backendPath.endsWith("/")) {
+            throw new BadPathFormatException("Chunked upload path must point to a file");
+        }
+        if (size < 0) {
+            throw new InvalidChunkException("File size can't be negative");
+        }
+        storageMetadataService.ensureIndexed(backendPath);
+        moveOperationRegistry.checkNotMoving(backendPath);
+        if (storageMetadataService.exists(backendPath)) {
+            throw new FolderAlreadyExistsException
+                    ("Cant upload file, because file or folder with this name already exists in target directory");
+        }
+        //Временные части занимают место до завершения сессии, поэтому квота резервируется сразу на весь файл
+        long reservedBytes = storageUsageService.reserveForSession(userId, size);
+        Instant now = Instant.now();
+        UploadSession uploadSession = UploadSession.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(userId)
+                .path(backendPath)
+                .size(size)
+                .chunkSize(chunkSize)
+                .reservedBytes(reservedBytes)
+                .contentType(contentType == null || contentType.isBlank() ? DEFAULT_CONTENT_TYPE : contentType)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        try {
+            return uploadSessionRepository.save(uploadSession);
+        } catch (RuntimeException e) {
+            storageUsageService.releaseReserved(userId, reservedBytes);
+            throw e;
+        }
+    }
+
+    private UploadSession getSession(String sessionId, Long userId) {
+        return uploadSessionRepository.findByIdAndUserId(sessionId, userId)
+                .orElseThrow(() -> new NoSuchElementException("Upload session not found"));
+    }
+
+    private void discard(UploadSession uploadSession) {
+        if (uploadSessionRepository.deleteSession(uploadSession.getId()) > 0) {
+            storageUsageService.releaseReserved(uploadSession.getUserId(), uploadSession.getReservedBytes());
+        }
+        storageBackend.removeObjectsByPrefix(STAGING_ROOT + uploadSession.getId() + "/");
+    }
+
+    private TreeMap<Integer, Long> listReceivedChunks(String sessionId) {
+        TreeMap<Integer, Long> receivedChunks = new TreeMap<>();
+        String stagingFolder = STAGING_ROOT + sessionId + "/";
+        Iterator<StorageBackend.StoredObject> chunks =
+                storageBackend.listObjects(stagingFolder, FolderTraversalMode.NON_RECURSIVE);
+        while (chunks.hasNext()) {
+            StorageBackend.StoredObject chunk = chunks.next();
+            receivedChunks.put(Integer.parseInt(chunk.key().substring(stagingFolder.length())), chunk.size());
+        }
+        return receivedChunks;
+    }
+
+    private UploadSessionResponseDto toResponseDto(UploadSession uploadSession, TreeMap<Integer, Long> receivedChunks) {
+        return UploadSessionResponseDto.builder()
+                .id(uploadSession.getId())
+                .path(toUserPath(uploadSession))
+                .size(uploadSession.getSize())
+                .chunkSize(uploadSession.getChunkSize())
+                .totalChunks(totalChunks(uploadSession))
+                .receivedChunks(List.copyOf(receivedChunks.keySet()))
+                .receivedBytes(receivedChunks.values().stream().mapToLong(Long::longValue).sum())
+                .build();
+    }
+
+    private static String toUserPath(UploadSession uploadSession) {
+        return uploadSession.getPath().substring(uploadSession.getPath().indexOf('/') + 1);
+    }
+
+    private static long expectedLength(UploadSession uploadSession, int chunkNumber) {
+        int totalChunks = totalChunks(uploadSession);
+        return chunkNumber < totalChunks
+                ? uploadSession.getChunkSize()
+                : uploadSession.getSize() - (long) (totalChunks - 1) * uploadSession.getChunkSize();
+    }
+
+    private static int totalChunks(UploadSession uploadSession) {
+        return (int) Math.max(1, ceilDiv(uploadSession.getSize(), uploadSession.getChunkSize()));
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private static String chunkPath(String sessionId, int chunkNumber) {
+        return String.format("%s%s/%05d", STAGING_ROOT, sessionId, chunkNumber);
+    }
+}
@@ -0,0 +1,179 @@
+package com.skillnez.cloudstorage.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Кэш листингов папок в Redis: один hash на корневую папку пользователя, поле - путь папки.
+ * Поле {@code #gen} увеличивается при каждой инвалидации, и листинг, прочитанный до нее,
+ * не записывается в кэш, поэтому устаревшие данные не переживают конкурентную мутацию.
+ * Инвалидация выполняется после коммита транзакции индекса.
+ * Каждое поле хранит время записи, и листинг старше ttl считается промахом: срок жизни hash не продлевается
+ * обращениями, а если инвалидация не дошла до Redis, hash удаляется целиком.
+ */
+@Slf4j
+@Service
+public class DirectoryListingCache {
+
+    private static final String KEY_PREFIX = "cloudstorage:listing:";
+    private static final String GENERATION_FIELD = "#gen";
+    private static final char TIMESTAMP_SEPARATOR = ':';
+    private static final TypeReference<List<StorageInfoResponseDto>> LISTING_TYPE = new TypeReference<>() {
+    };
+    //KEYS[1] - hash пользователя, ARGV: поколение на момент чтения, папка, время записи:листинг, ttl в мс.
+    //Срок жизни ставится только новому hash, чтобы у активного пользователя он все равно истекал
+    private static final RedisScript<Long> PUT_SCRIPT = RedisScript.of("""
+            local generation = redis.call('HGET', KEYS[1], '#gen') or '0'
+            if generation ~= ARGV[1] then
+                return 0
+            end
+            redis.call('HSET', KEYS[1], ARGV[2], ARGV[3])
+            if redis.call('PTTL', KEYS[1]) < 0 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            end
+            return 1
+            """, Long.class);
+    //KEYS[1] - hash пользователя, ARGV: ttl в мс, число точных путей, точные пути, затем префиксы поддеревьев
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = RedisScript.of("""
+            redis.call('HINCRBY', KEYS[1], '#gen', 1)
+            if redis.call('PTTL', KEYS[1]) < 0 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            end
+            local exactCount = tonumber(ARGV[2])
+            for i = 3, 2 + exactCount do
+                redis.call('HDEL', KEYS[1], ARGV[i])
+            end
+            if #ARGV > 2 + exactCount then
+                for _, field in ipairs(redis.call('HKEYS', KEYS[1])) do
+                    for i = 3 + exactCount, #ARGV do
+                        if string.sub(field, 1, #ARGV[i]) == ARGV[i] then
+                            redis.call('HDEL', KEYS[1], field)
+                            break
+                        end
+                    end
+                end
+            end
+            return 1
+            """, Long.class);
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    @Value("${storage.listing-cache.enabled:true}")
+    private boolean enabled;
+    @Value("${storage.listing-cache.ttl:PT10M}")
+    private Duration ttl;
+
+    @Autowired
+    public DirectoryListingCache(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public List<StorageInfoResponseDto> getOrLoad(String folderPath, Supplier<List<StorageInfoResponseDto>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        String key = key(folderPath);
+        String generation;
+        try {
+            List<Object> cached = redisTemplate.opsForHash().multiGet(key, List.of(folderPath, GENERATION_FIELD));
+            String entry = (String) cached.get(0);
+            if (entry != null && isFresh(entry)) {
+                return objectMapper.readValue(entry.substring(entry.indexOf(TIMESTAMP_SEPARATOR) + 1), LISTING_TYPE);
+            }
+            generation = cached.get(1) == null ? "0" : (String) cached.get(1);
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Directory listing cache read failed for {}", folderPath, e);
+            return loader.get();
+        }
+        List<StorageInfoResponseDto> listing = loader.get();
+        try {
+            redisTemplate.execute(PUT_SCRIPT, List.of(key), generation, folderPath,
+                    System.currentTimeMillis() + String.valueOf(TIMESTAMP_SEPARATOR)
+                    + objectMapper.writeValueAsString(listing),
+                    String.valueOf(ttl.toMillis()));
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Directory listing cache write failed for {}", folderPath, e);
+        }
+        return listing;
+    }
+
+    //Сбрасывает листинги перечисленных папок
+    public void invalidate(String... folderPaths) {
+        invalidate(List.of(folderPaths), List.of());
+    }
+
+    //Сбрасывает листинги перечисленных папок и всех папок внутри поддерева
+    public void invalidateTree(String treePath, String... folderPaths) {
+        invalidate(List.of(folderPaths), List.of(treePath));
+    }
+
+    private void invalidate(List<String> folderPaths, List<String> treePaths) {
+        if (!enabled) {
+            return;
+        }
+        String anyPath = treePaths.isEmpty() ? folderPaths.getFirst() : treePaths.getFirst();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(ttl.toMillis()));
+        args.add(String.valueOf(folderPaths.size()));
+        args.addAll(folderPaths);
+        args.addAll(treePaths);
+        String key = key(anyPath);
+        Runnable invalidation = () -> {
+            try {
+                redisTemplate.execute(INVALIDATE_SCRIPT, List.of(key), args.toArray());
+            } catch (DataAccessException e) {
+                log.warn("Directory listing cache invalidation failed for {}, dropping {}", args, key, e);
+                //Без инвалидации в кэше остался бы устаревший листинг. Если не прошло и удаление, он проживет не дольше ttl
+                try {
+                    redisTemplate.delete(key);
+                } catch (DataAccessException deleteException) {
+                    log.error("Directory listing cache {} was not dropped", key, deleteException);
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        } else {
+            invalidation.run();
+        }
+    }
+
+    //Записи без времени, например оставшиеся от прошлой версии, тоже считаются устаревшими
+    private boolean isFresh(String entry) {
+        int separatorIndex = entry.indexOf(TIMESTAMP_SEPARATOR);
+        if (separatorIndex <= 0) {
+            return false;
+        }
+        try {
+            long writtenAt = Long.parseLong(entry.substring(0, separatorIndex));
+            return System.currentTimeMillis() - writtenAt < ttl.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String key(String path) {
+        return KEY_PREFIX + path.substring(0, path.indexOf('/') + 1);
+    }
+}
@@ -1,17 +1,26 @@
 package com.skillnez.cloudstorage.service;
 
+import com.skillnez.cloudstorage.dto.DirectoryPageResponseDto;
+import com.skillnez.cloudstorage.dto.FileMetadataDto;
+import com.skillnez.cloudstorage.dto.MoveStatusResponseDto;
+import com.skillnez.cloudstorage.dto.PresignedUrlResponseDto;
 import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import com.skillnez.cloudstorage.entity.StorageObject;
 import com.skillnez.cloudstorage.exception.*;
-import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import com.skillnez.cloudstorage.utils.DirectorySort;
+import com.skillnez.cloudstorage.utils.LimitedInputStream;
 import com.skillnez.cloudstorage.utils.PathUtils;
-import io.minio.Result;
-import io.minio.StatObjectResponse;
-import io.minio.errors.ErrorResponseException;
-import io.minio.errors.MinioException;
-import io.minio.messages.Item;
+import com.skillnez.cloudstorage.utils.SearchMode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -19,14 +28,28 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
@@ -35,22 +58,64 @@ public class FileSystemService {
     private static final ByteArrayInputStream EMPTY_STREAM = new ByteArrayInputStream(new byte[]{});
     private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
     private static final Long EMPTY_FOLDER_SIZE = 0L;
-    private final MinioClientService minioClientService;
+    private static final int ARCHIVE_LISTING_PAGE_SIZE = 1000;
+    private final StorageBackend storageBackend;
+    private final StorageMetadataService storageMetadataService;
+    private final FolderMoveEngine folderMoveEngine;
+    private final FolderArchiveWriter folderArchiveWriter;
+    private final MoveOperationRegistry moveOperationRegistry;
+    private final DirectoryListingCache directoryListingCache;
+    private final StorageUsageService storageUsageService;
+    private final BlobStore blobStore;
+    private final Executor storageJobExecutor;
+    private final Executor storageTaskExecutor;
+    private final StorageMetrics storageMetrics;
+    @Value("${storage.listing.max-page-size:1000}")
+    private int listingMaxPageSize;
+    @Value("${storage.search.max-limit:1000}")
+    private int searchMaxLimit;
+    @Value("${storage.presigned.enabled:false}")
+    private boolean presignedEnabled;
+    @Value("${storage.presigned.expiry:PT5M}")
+    private Duration presignedExpiry;
+    @Value("${storage.upload.parallelism:8}")
+    private int uploadParallelism;
+    @Value("${storage.upload.max-in-flight-bytes:67108864}")
+    private long uploadMaxInFlightBytes;
 
     @Autowired
-    public FileSystemService(MinioClientService minioClientService) {
-        this.minioClientService = minioClientService;
+    public FileSystemService(StorageBackend storageBackend, StorageMetadataService storageMetadataService,
+                             FolderMoveEngine folderMoveEngine, FolderArchiveWriter folderArchiveWriter,
+                             MoveOperationRegistry moveOperationRegistry, DirectoryListingCache directoryListingCache,
+                             StorageUsageService storageUsageService, BlobStore blobStore,
+                             @Qualifier("storageJobExecutor") Executor storageJobExecutor,
+                             @Qualifier("storageTaskExecutor") Executor storageTaskExecutor,
+                             StorageMetrics storageMetrics) {
+        this.storageBackend = storageBackend;
+        this.storageMetadataService = storageMetadataService;
+        this.folderMoveEngine = folderMoveEngine;
+        this.folderArchiveWriter = folderArchiveWriter;
+        this.moveOperationRegistry = moveOperationRegistry;
+        this.directoryListingCache = directoryListingCache;
+        this.storageUsageService = storageUsageService;
+        this.blobStore = blobStore;
+        this.storageJobExecutor = storageJobExecutor;
+        this.storageTaskExecutor = storageTaskExecutor;
+        this.storageMetrics = storageMetrics;
     }
 
     public void createRootFolder (Long userId) {
         String userRootFolder = "user-" + userId + "-files/";
-        minioClientService.putObject(userRootFolder, EMPTY_STREAM, EMPTY_FOLDER_SIZE, DEFAULT_CONTENT_TYPE);
+        String etag = storageBackend.putObject(userRootFolder, EMPTY_STREAM, EMPTY_FOLDER_SIZE, DEFAULT_CONTENT_TYPE);
+        storageMetadataService.recordFolder(userRootFolder, etag);
     }
 
     public StorageInfoResponseDto createFolder(String backendPath) {
         if (!backendPath.endsWith("/")) {
             throw new BadPathFormatException("Folder name must ends with /");
         }
+        storageMetadataService.ensureIndexed(backendPath);
+        moveOperationRegistry.checkNotMoving(backendPath);
         if (isFileOrFolderExists(backendPath)) {
             throw new FolderAlreadyExistsException("File or folder already exists");
         }
@@ -58,94 +123,244 @@ public class FileSystemService {
             throw new NoParentFolderException("Parent folder does not exist");
         }
         log.info("Folder: {} created", backendPath);
-        minioClientService.putObject(backendPath, EMPTY_STREAM, EMPTY_FOLDER_SIZE, DEFAULT_CONTENT_TYPE);
+        String etag = storageBackend.putObject(backendPath, EMPTY_STREAM, EMPTY_FOLDER_SIZE, DEFAULT_CONTENT_TYPE);
+        storageMetadataService.recordFolder(backendPath, etag);
         return PathUtils.formStorageInfoResponseDto(backendPath, null);
     }
 
+    /**
+     * Имена и существование всех файлов проверяются до загрузки одним запросом к индексу,
+     * общие родительские папки создаются один раз на весь запрос. Тела файлов уходят в MinIO параллельно:
+     * не больше {@code uploadParallelism} файлов и не больше {@code uploadMaxInFlightBytes} байт одновременно.
+     * Результаты идут в порядке файлов в запросе.
+     */
     public List<StorageInfoResponseDto> upload(String backendPath, MultipartFile[] file) {
         int skippedFiles = 0;
-        List<StorageInfoResponseDto> uploadedElements = new ArrayList<>();
+        storageMetadataService.ensureIndexed(backendPath);
+        List<MultipartFile> files = new ArrayList<>(file.length);
+        List<String> backendPathsWithFileName = new ArrayList<>(file.length);
         for (MultipartFile fileItem : file) {
             if (fileItem.getOriginalFilename() == null || fileItem.getOriginalFilename().isEmpty()) {
                 skippedFiles++;
                 log.warn("{} files were skipped. Cause: filename is blank or null", skippedFiles);
                 continue;
             }
-            String backendPathWithFileName = PathUtils.formatPathForUpload(backendPath, fileItem.getOriginalFilename());
-            if (isFileOrFolderExists(backendPathWithFileName)) {
-                throw new FolderAlreadyExistsException
-                        ("Cant upload file, because file or folder with this name already exists in target directory");
+            files.add(fileItem);
+            backendPathsWithFileName.add(PathUtils.formatPathForUpload(backendPath, fileItem.getOriginalFilename()));
+        }
+        backendPathsWithFileName.forEach(moveOperationRegistry::checkNotMoving);
+        if (new HashSet<>(backendPathsWithFileName).size() < backendPathsWithFileName.size()
+            || !storageMetadataService.findExisting(backendPathsWithFileName).isEmpty()) {
+            throw new FolderAlreadyExistsException
+                    ("Cant upload file, because file or folder with this name already exists in target directory");
+        }
+        Set<String> parentFolders = new LinkedHashSet<>();
+        for (String backendPathWithFileName : backendPathsWithFileName) {
+            parentFolders.addAll(PathUtils.getParentFolders(backendPathWithFileName));
+        }
+        createFolders(parentFolders);
+        return storeFiles(files, backendPathsWithFileName);
+    }
+
+    private List<StorageInfoResponseDto> storeFiles(List<MultipartFile> files, List<String> backendPathsWithFileName) {
+        StorageInfoResponseDto[] uploadedElements = new StorageInfoResponseDto[files.size()];
+        List<CompletableFuture<Void>> uploads = new ArrayList<>(files.size());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        int bytesBudget = (int) Math.min(Math.max(uploadMaxInFlightBytes, 1), Integer.MAX_VALUE);
+        Semaphore filesInFlight = new Semaphore(uploadParallelism);
+        Semaphore bytesInFlight = new Semaphore(bytesBudget);
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                if (failure.get() != null) {
+                    break;
+                }
+                int index = i;
+                MultipartFile fileItem = files.get(i);
+                //Файл крупнее лимита занимает весь бюджет и загружается один
+                int weight = (int) Math.min(Math.max(fileItem.getSize(), 0), bytesBudget);
+                filesInFlight.acquire();
+                bytesInFlight.acquire(weight);
+                uploads.add(CompletableFuture
+                        .runAsync(() -> uploadedElements[index] = storeFile(backendPathsWithFileName.get(index),
+                                fileItem), storageTaskExecutor)
+                        .whenComplete((ignored, e) -> {
+                            if (e != null) {
+                                failure.compareAndSet(null, e instanceof CompletionException ? e.getCause() : e);
+                            }
+                            bytesInFlight.release(weight);
+                            filesInFlight.release();
+                        }));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new UploadErrorException("Upload was interrupted"));
+        } finally {
+            CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        }
+
+        if (failure.get() instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure.get() != null) {
+            throw new UploadErrorException("Something went wrong while uploading file");
+        }
+        return Arrays.asList(uploadedElements);
+    }
+
+    private StorageInfoResponseDto storeFile(String backendPathWithFileName, MultipartFile fileItem) {
+        try (InputStream fileStream = fileItem.getInputStream()) {
+            return storeFile(backendPathWithFileName, fileStream, fileItem.getSize(), fileItem.getContentType());
+        } catch (IOException e) {
+            throw new UploadErrorException("Something went wrong while uploading file");
+        }
+    }
+
+    public StorageInfoResponseDto uploadStream(String backendPath, String fileName, InputStream fileStream,
+                                               String contentType) {
+        storageMetadataService.ensureIndexed(backendPath);
+        String backendPathWithFileName = PathUtils.formatPathForUpload(backendPath, fileName);
+        moveOperationRegistry.checkNotMoving(backendPathWithFileName);
+        if (isFileOrFolderExists(backendPathWithFileName)) {
+            throw new FolderAlreadyExistsException
+                    ("Cant upload file, because file or folder with this name already exists in target directory");
+        }
+        createParentFolders(backendPathWithFileName);
+        return storeFile(backendPathWithFileName, fileStream, -1, contentType);
+    }
+
+    /**
+     * fileSize = -1, если размер заранее неизвестен. Место в квоте резервируется атомарно: известный размер - сразу,
+     * поток неизвестной длины - по мере чтения. Если квоты не хватило посреди потока, загрузка прерывается,
+     * а записанный объект удаляется.
+     */
+    private StorageInfoResponseDto storeFile(String backendPathWithFileName, InputStream fileStream, long fileSize,
+                                             String contentType) {
+        String resolvedContentType = (contentType == null) ? DEFAULT_CONTENT_TYPE : contentType;
+        Long userId = StorageUsageService.userIdOf(backendPathWithFileName);
+        try (StorageUsageService.Reservation reservation = storageUsageService.reserve(userId, Math.max(fileSize, 0))) {
+            LimitedInputStream limitedStream = new LimitedInputStream(fileStream, reservation::extendTo);
             try {
-                String[] pathPrefix = backendPathWithFileName.split("/");
-                StringBuilder stringBuilder = new StringBuilder();
-                for (int i = 0; i < pathPrefix.length - 1; i++) {
-                    String currentPath = stringBuilder.append(pathPrefix[i]).append("/").toString();
-                    if (!isFileOrFolderExists(currentPath)) {
-                        minioClientService.putObject(currentPath, EMPTY_STREAM, EMPTY_FOLDER_SIZE, DEFAULT_CONTENT_TYPE);
-                    }
+                return writeFile(backendPathWithFileName, limitedStream, fileSize, resolvedContentType);
+            } catch (RuntimeException e) {
+                if (!limitedStream.isLimitExceeded()) {
+                    throw e;
+                }
+                if (!blobStore.isEnabled()) {
+                    storageBackend.removeObject(backendPathWithFileName);
                 }
-                minioClientService
-                        .putObject(backendPathWithFileName, fileItem.getInputStream(), fileItem.getSize(), fileItem.getContentType());
-            } catch (IOException e) {
-                throw new UploadErrorException("Something went wrong while uploading file");
+                throw storageUsageService.quotaExceeded(userId, limitedStream.getCount());
+            }
+        }
+    }
+
+    private StorageInfoResponseDto writeFile(String backendPathWithFileName, LimitedInputStream fileStream,
+                                             long fileSize, String contentType) {
+        if (blobStore.isEnabled()) {
+            BlobStore.StoredBlob blob = blobStore.store(fileStream, fileSize, contentType);
+            try {
+                storageMetadataService.recordFile(backendPathWithFileName, blob.size(), blob.etag(), blob.key());
+            } catch (RuntimeException e) {
+                blobStore.release(blob.key(), 1);
+                throw e;
             }
-            uploadedElements.add(PathUtils.formStorageInfoResponseDto(backendPathWithFileName, fileItem.getSize()));
+            storageMetrics.recordUpload(blob.size());
+            return PathUtils.formStorageInfoResponseDto(backendPathWithFileName, blob.size());
+        }
+        String etag = storageBackend.putObject(backendPathWithFileName, fileStream, fileSize, contentType);
+        storageMetadataService.recordFile(backendPathWithFileName, fileStream.getCount(), etag);
+        storageMetrics.recordUpload(fileStream.getCount());
+        return PathUtils.formStorageInfoResponseDto(backendPathWithFileName, fileStream.getCount());
+    }
+
+    public void createParentFolders(String backendPathWithFileName) {
+        createFolders(PathUtils.getParentFolders(backendPathWithFileName));
+    }
+
+    //Недостающие папки ищутся одним запросом к индексу, их маркеры создаются в хранилище параллельно
+    private void createFolders(Collection<String> folders) {
+        Set<String> existing = storageMetadataService.findExisting(folders);
+        List<String> missing = folders.stream().filter(folder -> !existing.contains(folder)).toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<String>> folderMarkers = missing.stream()
+                .map(folder -> storageBackend.putObjectAsync(folder, new ByteArrayInputStream(new byte[0]),
+                        EMPTY_FOLDER_SIZE, DEFAULT_CONTENT_TYPE))
+                .toList();
+        StorageBackend.await(CompletableFuture.allOf(folderMarkers.toArray(CompletableFuture[]::new)));
+        Map<String, String> etagsByPath = new LinkedHashMap<>();
+        for (int i = 0; i < missing.size(); i++) {
+            etagsByPath.put(missing.get(i), folderMarkers.get(i).join());
         }
-        return uploadedElements;
+        storageMetadataService.recordFolders(etagsByPath);
     }
 
     public List<StorageInfoResponseDto> getElementsInFolder(String backendPath, Long userId) {
+        storageMetadataService.ensureIndexed(backendPath);
+        return directoryListingCache.getOrLoad(backendPath, () -> {
+            if (!isFileOrFolderExists(backendPath) && !backendPath.equals("user-" + userId + "-files/")) {
+                throw new NoParentFolderException("Path does not exist");
+            }
+            List<StorageInfoResponseDto> elementsInFolder = new ArrayList<>();
+            for (StorageObject storageObject : storageMetadataService.listChildren(backendPath)) {
+                elementsInFolder.add(PathUtils.formStorageInfoResponseDto(storageObject.getPath(), storageObject.getSize()));
+            }
+            return elementsInFolder;
+        });
+    }
+
+    public DirectoryPageResponseDto getElementsInFolderPage(String backendPath, DirectorySort sort,
+                                                            Sort.Direction direction, String cursor, int limit,
+                                                            Long userId) {
+        storageMetadataService.ensureIndexed(backendPath);
         if (!isFileOrFolderExists(backendPath) && !backendPath.equals("user-" + userId + "-files/")) {
             throw new NoParentFolderException("Path does not exist");
         }
-        Iterable<Result<Item>> results = minioClientService.listObjects(backendPath, FolderTraversalMode.NON_RECURSIVE);
-        return mapMinioObjects(backendPath, results);
+        Window<StorageObject> page = storageMetadataService.listChildren(backendPath, sort, direction,
+                ListingCursor.decode(cursor, sort, direction), Math.min(Math.max(limit, 1), listingMaxPageSize));
+        List<StorageInfoResponseDto> elementsInFolder = new ArrayList<>(page.size());
+        for (StorageObject storageObject : page) {
+            elementsInFolder.add(PathUtils.formStorageInfoResponseDto(storageObject.getPath(), storageObject.getSize()));
+        }
+        String nextCursor = (page.hasNext() && !page.isEmpty())
+                ? ListingCursor.encode((KeysetScrollPosition) page.positionAt(page.size() - 1), sort, direction)
+                : null;
+        return new DirectoryPageResponseDto(elementsInFolder, nextCursor);
     }
 
-    public List<StorageInfoResponseDto> searchElements(String backendPath, String query, Long userId) {
+    //Не больше limit результатов (от 1 до storage.search.max-limit); hasNext - часть совпадений не вошла
+    public Window<StorageInfoResponseDto> searchElements(String backendPath, String query, SearchMode mode,
+                                                         int limit, Long userId) {
+        storageMetadataService.ensureIndexed(backendPath);
         if (!isFileOrFolderExists(backendPath) && !backendPath.equals("user-" + userId + "-files/")) {
             throw new NoParentFolderException("Path does not exist");
         }
+        if (query.isBlank()) {
+            return Window.from(List.of(), ScrollPosition::offset);
+        }
+        int effectiveLimit = Math.min(Math.max(limit, 1), searchMaxLimit);
         List<StorageInfoResponseDto> searchResults = new ArrayList<>();
-        Iterable<Result<Item>> results = minioClientService.listObjects(backendPath, FolderTraversalMode.RECURSIVE);
-        for (Result<Item> result : results) {
-            try {
-                Item item = result.get();
-                if (backendPath.equals(item.objectName())) {
-                    continue;
-                }
-                StorageInfoResponseDto fileToSort = PathUtils.formStorageInfoResponseDto(item.objectName(), item.size());
-                if (fileToSort.getName().toLowerCase().contains(query.toLowerCase())) {
-                    searchResults.add(fileToSort);
-                }
-            } catch (IOException | GeneralSecurityException | MinioException e) {
-                throw new MinioOperationException("Object listing error: ", e);
-            }
+        for (StorageObject storageObject : storageMetadataService.search(backendPath, query, mode, effectiveLimit + 1)) {
+            searchResults.add(PathUtils.formStorageInfoResponseDto(storageObject.getPath(), storageObject.getSize()));
         }
-        return searchResults;
+        boolean truncated = searchResults.size() > effectiveLimit;
+        return Window.from(truncated ? searchResults.subList(0, effectiveLimit) : searchResults,
+                ScrollPosition::offset, truncated);
     }
 
     public StorageInfoResponseDto getElement(String backendPath, Long userId) {
+        storageMetadataService.ensureIndexed(backendPath);
         if (!isFileOrFolderExists(backendPath) && !backendPath.equals("user-" + userId + "-files/")) {
             throw new NoParentFolderException("Path does not exist");
         }
-        StorageInfoResponseDto element = null;
-        try {
-            StatObjectResponse statObject = minioClientService.statObject(backendPath);
-            element = PathUtils.formStorageInfoResponseDto(backendPath, statObject.size());
-        } catch (ErrorResponseException e) {
-            if (e.errorResponse().code().equals("NoSuchKey")) {
-                throw new NoSuchElementException("No element found");
-            }
-        }
-        if (element == null) {
-            throw new NoSuchElementException("No element found");
-        }
-        return element;
+        StorageObject storageObject = storageMetadataService.find(backendPath)
+                .orElseThrow(() -> new NoSuchElementException("No element found"));
+        return PathUtils.formStorageInfoResponseDto(backendPath, storageObject.getSize());
     }
 
     public void delete (String backendPath, Long userId) {
+        storageMetadataService.ensureIndexed(backendPath);
+        moveOperationRegistry.checkNotMoving(backendPath);
         if (backendPath.endsWith("/")) {
             deleteFolder(backendPath, userId);
             log.info("Deleted folder {} from {}", Path.of(backendPath).getFileName().toString(), backendPath);
@@ -156,40 +371,133 @@ public class FileSystemService {
     }
 
     public StorageInfoResponseDto moveOrRename (String backendPathFrom, String backendPathTo, Long userId) {
+        storageMetadataService.ensureIndexed(backendPathFrom);
+        moveOperationRegistry.checkNotMoving(backendPathFrom);
+        moveOperationRegistry.checkNotMoving(backendPathTo);
         if (backendPathFrom.endsWith("/")) {
             return moveOrRenameFolder(backendPathFrom, backendPathTo, userId);
         }
         return moveOrRenameFile(backendPathFrom, backendPathTo, userId);
     }
 
+    public StorageInfoResponseDto copy(String backendPathFrom, String backendPathTo, Long userId) {
+        storageMetadataService.ensureIndexed(backendPathFrom);
+        moveOperationRegistry.checkNotMoving(backendPathFrom);
+        moveOperationRegistry.checkNotMoving(backendPathTo);
+        if (backendPathFrom.endsWith("/")) {
+            return copyFolder(backendPathFrom, backendPathTo, userId);
+        }
+        return copyFile(backendPathFrom, backendPathTo, userId);
+    }
+
+    public MoveStatusResponseDto moveOrRenameAsync(String backendPathFrom, String backendPathTo, Long userId) {
+        storageMetadataService.ensureIndexed(backendPathFrom);
+        if (!backendPathFrom.endsWith("/")) {
+            MoveOperation operation = moveOperationRegistry.register(userId, backendPathFrom, backendPathTo, 1);
+            try {
+                StorageInfoResponseDto movedFile = moveOrRenameFile(backendPathFrom, backendPathTo, userId);
+                operation.objectCopied();
+                operation.complete(movedFile);
+            } catch (RuntimeException e) {
+                operation.fail("Something went wrong while moving file");
+                throw e;
+            }
+            return operation.toResponseDto();
+        }
+        validateFolderMove(backendPathFrom, backendPathTo, userId);
+        MoveOperation operation = moveOperationRegistry.register(userId, backendPathFrom, backendPathTo,
+                storageMetadataService.countTree(backendPathFrom));
+        try {
+            storageJobExecutor.execute(() -> {
+                try {
+                    runFolderMove(operation);
+                } catch (RuntimeException e) {
+                    log.error("Folder move from {} to {} failed", backendPathFrom, backendPathTo, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            operation.fail("Folder move was not started");
+            throw e;
+        }
+        return operation.toResponseDto();
+    }
+
+    public MoveStatusResponseDto getMoveStatus(String operationId, Long userId) {
+        return moveOperationRegistry.get(operationId, userId).toResponseDto();
+    }
+
     public InputStream downloadFile(String backendPath, Long userId) {
+        storageMetadataService.ensureIndexed(backendPath);
+        InputStream downloadStream = storageBackend.getObject(resolveObjectKey(backendPath));
+        if (downloadStream == null) {
+            throw new NoSuchElementException("No element found");
+        }
+        return storageMetrics.meterDownload(downloadStream);
+    }
+
+    public InputStream downloadFile(String backendPath, Long userId, long offset, long length) {
+        storageMetadataService.ensureIndexed(backendPath);
+        return storageMetrics.meterDownload(storageBackend.getObject(resolveObjectKey(backendPath), offset, length));
+    }
+
+    //Файл на локальном диске, если хранилище его дает: такой файл отдается без чтения через JVM
+    public Optional<Path> getLocalFile(String backendPath, Long userId) {
+        storageMetadataService.ensureIndexed(backendPath);
+        return storageBackend.localFile(resolveObjectKey(backendPath));
+    }
+
+    public FileMetadataDto getFileMetadata(String backendPath, Long userId) {
+        storageMetadataService.ensureIndexed(backendPath);
         if (!isFileOrFolderExists(backendPath) && !backendPath.equals("user-" + userId + "-files/")) {
             throw new NoParentFolderException("Path does not exist");
         }
-        InputStream downloadStream = minioClientService.getObject(backendPath);
-        if (downloadStream == null) {
-            throw new NoSuchElementException("No element found");
+        StorageObject storageObject = storageMetadataService.find(backendPath)
+                .orElseThrow(() -> new NoSuchElementException("No element found"));
+        return new FileMetadataDto(storageObject.getSize(), storageObject.getEtag(), storageObject.getLastModified());
+    }
+
+    public boolean isPresignedEnabled() {
+        return presignedEnabled && storageBackend.supportsPresignedUrls();
+    }
+
+    public PresignedUrlResponseDto getPresignedDownloadUrl(String backendPath, Long userId) {
+        requirePresignedEnabled();
+        storageMetadataService.ensureIndexed(backendPath);
+        if (backendPath.endsWith("/")) {
+            throw new NoParentFolderException("Path does not exist");
         }
-        return downloadStream;
+        String objectKey = resolveObjectKey(backendPath);
+        String encodedName = URLEncoder.encode(PathUtils.getFileOrFolderName(backendPath), StandardCharsets.UTF_8)
+                .replace("+", "%20");
+        String url = storageBackend.getPresignedObjectUrl(HttpMethod.GET, objectKey, presignedExpiry,
+                Map.of("response-content-disposition", "attachment; filename=\"" + encodedName + "\""));
+        return new PresignedUrlResponseDto(url, toUserPath(backendPath), Instant.now().plus(presignedExpiry));
     }
 
     public void downloadFolder(String backendPath, Long userId, OutputStream outputStream) {
+        storageMetadataService.ensureIndexed(backendPath);
         if (!isFileOrFolderExists(backendPath) & !backendPath.equals("user-" + userId + "-files/")) {
             throw new NoParentFolderException("Path does not exist");
         }
-        try (ZipOutputStream zipArchive = new ZipOutputStream(outputStream)) {
-            Iterable<Result<Item>> results = minioClientService.listObjects(backendPath, FolderTraversalMode.RECURSIVE);
-            for (Result<Item> result : results) {
-                Item item = result.get();
-                try (InputStream minioDownloadStream = minioClientService.getObject(item.objectName())) {
-                    String entryName = item.objectName().substring(("user-" + userId + "-files/").length());
-                    zipArchive.putNextEntry(new ZipEntry(entryName));
-                    minioDownloadStream.transferTo(zipArchive);
-                    zipArchive.closeEntry();
-                }
+        String userRootFolder = "user-" + userId + "-files/";
+        Iterator<StorageObject> items = storageMetadataService.iterateTree(backendPath, ARCHIVE_LISTING_PAGE_SIZE);
+        Iterator<FolderArchiveWriter.ArchiveEntry> entries = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public FolderArchiveWriter.ArchiveEntry next() {
+                StorageObject item = items.next();
+                return new FolderArchiveWriter.ArchiveEntry(item.getObjectKey(),
+                        item.getPath().substring(userRootFolder.length()), item.getSize());
             }
+        };
+        try {
+            folderArchiveWriter.write(entries, storageBackend::getObject, storageMetrics.meterZip(outputStream));
             log.info("Folder {} downloaded" , backendPath);
-        } catch (IOException | GeneralSecurityException | MinioException e) {
+        } catch (IOException e) {
             throw new MinioOperationException("Something went wrong while downloading file", e);
         }
     }
@@ -199,6 +507,7 @@ public class FileSystemService {
             throw new NoParentFolderException("Path does not exist");
         }
         removeFolder(backendPath);
+        storageMetadataService.removeTree(backendPath);
     }
 
     private StorageInfoResponseDto moveOrRenameFile(String backendPathFrom, String backendPathTo, Long userId) {
@@ -214,13 +523,53 @@ public class FileSystemService {
         if (isFileOrFolderExists(backendPathToWithExtension)) {
             throw new FolderAlreadyExistsException("File already exists");
         }
-        minioClientService.copyObject(backendPathFrom, backendPathToWithExtension);
-        minioClientService.removeObject(backendPathFrom);
+        //Дедуплицированный файл - только ссылка на блоб, перемещается без копирования данных
+        if (!isBlobReference(backendPathFrom)) {
+            storageBackend.moveObject(backendPathFrom, backendPathToWithExtension);
+        }
+        storageMetadataService.move(backendPathFrom, backendPathToWithExtension);
         log.info("file path changed from {} to {}", backendPathFrom, backendPathTo);
         return getElement(backendPathToWithExtension, userId);
     }
 
+    private StorageInfoResponseDto copyFile(String backendPathFrom, String backendPathTo, Long userId) {
+        StorageObject source = storageMetadataService.find(backendPathFrom)
+                .orElseThrow(() -> new NoParentFolderException("Path does not exists"));
+        if (!isFileOrFolderExists(PathUtils.removeFileOrFolderName(backendPathTo))) {
+            throw new NoParentFolderException("Path does not exists");
+        }
+        String extension = PathUtils.getExtension(backendPathFrom, backendPathTo);
+        String backendPathToWithExtension = PathUtils.normalizePath(backendPathTo + extension);
+        if (isFileOrFolderExists(backendPathToWithExtension)) {
+            throw new FolderAlreadyExistsException("File already exists");
+        }
+        storageUsageService.checkQuota(userId, source.getSize());
+        String etag = source.getEtag();
+        if (source.getBlobKey() == null) {
+            etag = storageBackend.copyObject(backendPathFrom, backendPathToWithExtension);
+        }
+        storageMetadataService.copy(backendPathFrom, backendPathToWithExtension, etag);
+        log.info("file {} copied to {}", backendPathFrom, backendPathToWithExtension);
+        return getElement(backendPathToWithExtension, userId);
+    }
+
+    private StorageInfoResponseDto copyFolder(String backendPathFrom, String backendPathTo, Long userId) {
+        validateFolderMove(backendPathFrom, backendPathTo, userId);
+        storageUsageService.checkQuota(userId, storageMetadataService.sizeOfTree(backendPathFrom));
+        folderMoveEngine.copy(backendPathFrom, backendPathTo);
+        storageMetadataService.copyTree(backendPathFrom, backendPathTo);
+        log.info("Folder {} copied to {}", backendPathFrom, backendPathTo);
+        return getElement(backendPathTo, userId);
+    }
+
     private StorageInfoResponseDto moveOrRenameFolder(String backendPathFrom, String backendPathTo, Long userId) {
+        validateFolderMove(backendPathFrom, backendPathTo, userId);
+        MoveOperation operation = moveOperationRegistry.register(userId, backendPathFrom, backendPathTo,
+                storageMetadataService.countTree(backendPathFrom));
+        return runFolderMove(operation);
+    }
+
+    private void validateFolderMove(String backendPathFrom, String backendPathTo, Long userId) {
         if (!isFileOrFolderExists(backendPathFrom) && !backendPathFrom.equals("user-" + userId + "-files/")) {
             throw new NoParentFolderException("Path does not exists");
         }
@@ -231,95 +580,73 @@ public class FileSystemService {
         if (isFileOrFolderExists(backendPathTo)) {
             throw new FolderAlreadyExistsException("Folder already exists in path " + backendPathTo);
         }
-        Iterable<Result<Item>> results = minioClientService.listObjects(backendPathFrom, FolderTraversalMode.RECURSIVE);
-        List<String> copyPathBuffer = new ArrayList<>();
-        for (Result<Item> result : results) {
-
-            try {
-                Item item = result.get();
-                String oldFolderName = item.objectName();
-                String newFolderName = oldFolderName.replaceFirst(Pattern.quote(backendPathFrom), backendPathTo);
-                //EXPERIMENTAL
-                if (newFolderName.startsWith(oldFolderName) && newFolderName.length() > oldFolderName.length()
-                && newFolderName.endsWith("/") && oldFolderName.endsWith("/")) {
-                    log.info("EXPERIMENTAL PARENT FOLDER CUT RESTRICTION");
-                    throw new BadPathFormatException("Can't move parent folder to it's child folder");
-                }
-                //EXPERIMENTAL
-                minioClientService.copyObject(oldFolderName, newFolderName);
-                copyPathBuffer.add(oldFolderName);
-            } catch (IOException | GeneralSecurityException | MinioException e) {
-                throw new MinioOperationException("Object listing error: ", e);
-            }
+        if (backendPathTo.startsWith(backendPathFrom)) {
+            throw new BadPathFormatException("Can't move parent folder to it's child folder");
         }
-        //сделал для того, чтобы разделить операции копирования и удаления
-        for (String oldPath : copyPathBuffer) {
-            minioClientService.removeObject(oldPath);
+    }
+
+    private StorageInfoResponseDto runFolderMove(MoveOperation operation) {
+        try {
+            folderMoveEngine.move(operation);
+            storageMetadataService.moveTree(operation.getBackendPathFrom(), operation.getBackendPathTo());
+            log.info("Folder path changed from {} to {}", operation.getBackendPathFrom(), operation.getBackendPathTo());
+            StorageInfoResponseDto movedFolder = getElement(operation.getBackendPathTo(), operation.getUserId());
+            operation.complete(movedFolder);
+            return movedFolder;
+        } catch (RuntimeException e) {
+            operation.fail("Something went wrong while moving folder");
+            throw e;
         }
-        copyPathBuffer.clear();
-        log.info("Folder path changed from {} to {}", backendPathFrom, backendPathTo);
-        return getElement(backendPathTo, userId);
     }
 
     private void deleteFile(String backendPath, Long userId) {
         if (!isFileOrFolderExists(backendPath) && !backendPath.equals("user-" + userId + "-files/")) {
             throw new NoParentFolderException("Path does not exist");
         }
-        minioClientService.removeObject(backendPath);
+        if (!isBlobReference(backendPath)) {
+            storageBackend.removeObject(backendPath);
+        }
+        storageMetadataService.remove(backendPath);
+    }
+
+    private String resolveObjectKey(String backendPath) {
+        return storageMetadataService.find(backendPath)
+                .map(StorageObject::getObjectKey)
+                .orElseThrow(() -> new NoParentFolderException("Path does not exist"));
+    }
+
+    private boolean isBlobReference(String backendPath) {
+        return storageMetadataService.find(backendPath).map(StorageObject::getBlobKey).isPresent();
     }
 
     private boolean isFileOrFolderExists(String path) {
-        try {
-            minioClientService.statObject(path);
-        } catch (ErrorResponseException e) {
-            if (e.errorResponse().code().equals("NoSuchKey")) {
-                return false;
-            }
-        }
-        return true;
+        return storageMetadataService.exists(path);
     }
 
     private boolean isParentFolderExists(String backendPath) {
-        backendPath = PathUtils.normalizePath(backendPath);
-        String[] pathPrefix = backendPath.split("/");
-        if (pathPrefix.length <= 2) {
+        List<String> parentFolders = PathUtils.getParentFolders(PathUtils.normalizePath(backendPath));
+        if (parentFolders.size() <= 1) {
             return true;
         }
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < pathPrefix.length - 1; i++) {
-            String currentPath = stringBuilder.append(pathPrefix[i]).append("/").toString();
-            if (!isFileOrFolderExists(currentPath)) {
-                return false;
-            }
-        }
-        return true;
+        return storageMetadataService.existsAll(parentFolders);
     }
 
     private void removeFolder(String backendPath) {
-        Iterable<Result<Item>> results = minioClientService.listObjects(backendPath, FolderTraversalMode.RECURSIVE);
-        for (Result<Item> result : results) {
-            try {
-                Item item = result.get();
-                minioClientService.removeObject(item.objectName());
-            } catch (IOException | GeneralSecurityException | MinioException e) {
-                throw new MinioOperationException("Object listing error: ", e);
-            }
+        Map<String, String> failedObjects = storageBackend.removeObjectsByPrefix(backendPath);
+        if (!failedObjects.isEmpty()) {
+            storageMetadataService.removeTree(backendPath, failedObjects.keySet());
+            throw new PartialDeleteException(failedObjects.size() + " objects could not be deleted", failedObjects);
         }
     }
 
-    private List<StorageInfoResponseDto> mapMinioObjects(String backendPath, Iterable<Result<Item>> results) {
-        List<StorageInfoResponseDto> elementsInFolder = new ArrayList<>();
-        for (Result<Item> result : results) {
-            try {
-                Item item = result.get();
-                if (backendPath.equals(item.objectName())) {
-                    continue;
-                }
-                elementsInFolder.add(PathUtils.formStorageInfoResponseDto(item.objectName(), item.size()));
-            } catch (IOException | GeneralSecurityException | MinioException e) {
-                throw new MinioOperationException("Object listing error: ", e);
-            }
+    //Включенного флага мало: локальное хранилище подписывать ссылки не умеет
+    public void requirePresignedEnabled() {
+        if (!isPresignedEnabled()) {
+            throw new NoSuchElementException("Presigned transfers are disabled");
         }
-        return elementsInFolder;
+    }
+
+    private static String toUserPath(String backendPath) {
+        return backendPath.substring(backendPath.indexOf('/') + 1);
     }
 }
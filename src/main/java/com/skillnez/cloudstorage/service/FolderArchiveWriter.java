@@ -0,0 +1,168 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Собирает zip-архив, заранее скачивая следующие объекты, пока пишется текущая запись.
+ * Не больше {@code prefetchDepth} объектов в очереди и не больше {@code maxBufferedBytes} байт на одно скачивание;
+ * объекты крупнее лимита не буферизуются и пишутся в архив напрямую из потока MinIO.
+ * Все одновременные скачивания делят общий бюджет {@code maxTotalBufferedBytes}: если его не хватает,
+ * архив сначала дописывает свою очередь, а затем пишет объект без буферизации, поэтому ожидания чужих байт нет.
+ */
+@Service
+public class FolderArchiveWriter {
+
+    private final Executor storageTaskExecutor;
+    private final Semaphore bufferBudget;
+    @Value("${storage.zip.prefetch-depth:8}")
+    private int prefetchDepth;
+    @Value("${storage.zip.max-buffered-bytes:33554432}")
+    private long maxBufferedBytes;
+
+    @Autowired
+    public FolderArchiveWriter(@Qualifier("storageTaskExecutor") Executor storageTaskExecutor,
+                               @Value("${storage.zip.max-total-buffered-bytes:268435456}") long maxTotalBufferedBytes) {
+        this.storageTaskExecutor = storageTaskExecutor;
+        this.bufferBudget = new Semaphore((int) Math.min(Math.max(maxTotalBufferedBytes, 0), Integer.MAX_VALUE));
+    }
+
+    public record ArchiveEntry(String objectName, String entryName, long size) {
+    }
+
+    public void write(Iterator<ArchiveEntry> entries, Function<String, InputStream> objectSource,
+                      OutputStream outputStream) throws IOException {
+        Deque<PendingEntry> pending = new ArrayDeque<>();
+        long bufferedBytes = 0;
+        try (ZipOutputStream zipArchive = new ZipOutputStream(outputStream)) {
+            while (entries.hasNext()) {
+                ArchiveEntry entry = entries.next();
+                boolean bufferable = entry.size() <= Math.min(maxBufferedBytes, Integer.MAX_VALUE);
+                while (!pending.isEmpty() && (pending.size() >= prefetchDepth
+                        || (bufferable && bufferedBytes + entry.size() > maxBufferedBytes))) {
+                    bufferedBytes -= writeEntry(pending.removeFirst(), zipArchive, objectSource);
+                }
+                if (entry.size() == 0) {
+                    pending.addLast(new PendingEntry(entry, CompletableFuture.completedFuture(new byte[0])));
+                    continue;
+                }
+                int weight = (int) entry.size();
+                //Общий бюджет занят другими скачиваниями: освобождаем свою очередь, пока байты не найдутся
+                while (bufferable && !bufferBudget.tryAcquire(weight)) {
+                    if (pending.isEmpty()) {
+                        bufferable = false;
+                    } else {
+                        bufferedBytes -= writeEntry(pending.removeFirst(), zipArchive, objectSource);
+                    }
+                }
+                if (bufferable) {
+                    bufferedBytes += entry.size();
+                    pending.addLast(new PendingEntry(entry, prefetch(objectSource, entry.objectName(), weight)));
+                } else {
+                    pending.addLast(new PendingEntry(entry, null));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeEntry(pending.removeFirst(), zipArchive, objectSource);
+            }
+        } finally {
+            for (PendingEntry pendingEntry : pending) {
+                abandon(pendingEntry);
+            }
+        }
+    }
+
+    /**
+     * Байты из бюджета освобождает тот, у кого они остались: задача чтения - если ее результат никому не достался
+     * (ошибка или отмена), иначе запись в архив или {@link #abandon}.
+     */
+    private CompletableFuture<byte[]> prefetch(Function<String, InputStream> objectSource, String objectName,
+                                               int weight) {
+        CompletableFuture<byte[]> content = new CompletableFuture<>();
+        try {
+            storageTaskExecutor.execute(() -> {
+                boolean delivered = false;
+                try {
+                    if (!content.isDone()) {
+                        delivered = content.complete(readFully(objectSource, objectName));
+                    }
+                } catch (RuntimeException e) {
+                    content.completeExceptionally(e);
+                } finally {
+                    if (!delivered) {
+                        bufferBudget.release(weight);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            bufferBudget.release(weight);
+            throw e;
+        }
+        return content;
+    }
+
+    private void abandon(PendingEntry pendingEntry) {
+        CompletableFuture<byte[]> content = pendingEntry.content();
+        if (content == null || pendingEntry.entry().size() == 0) {
+            return;
+        }
+        if (!content.cancel(false) && !content.isCompletedExceptionally()) {
+            bufferBudget.release((int) pendingEntry.entry().size());
+        }
+    }
+
+    private long writeEntry(PendingEntry pendingEntry, ZipOutputStream zipArchive,
+                            Function<String, InputStream> objectSource) throws IOException {
+        ArchiveEntry entry = pendingEntry.entry();
+        zipArchive.putNextEntry(new ZipEntry(entry.entryName()));
+        if (pendingEntry.content() == null) {
+            try (InputStream objectStream = objectSource.apply(entry.objectName())) {
+                objectStream.transferTo(zipArchive);
+            }
+            zipArchive.closeEntry();
+            return 0;
+        }
+        byte[] content;
+        try {
+            content = pendingEntry.content().join();
+        } catch (CompletionException | CancellationException e) {
+            throw new MinioOperationException("Object prefetch error: " + entry.objectName(), e);
+        }
+        try {
+            zipArchive.write(content);
+        } finally {
+            bufferBudget.release((int) entry.size());
+        }
+        zipArchive.closeEntry();
+        return entry.size();
+    }
+
+    private static byte[] readFully(Function<String, InputStream> objectSource, String objectName) {
+        try (InputStream objectStream = objectSource.apply(objectName)) {
+            return objectStream.readAllBytes();
+        } catch (IOException e) {
+            throw new MinioOperationException("Object get error: " + objectName, e);
+        }
+    }
+
+    private record PendingEntry(ArchiveEntry entry, CompletableFuture<byte[]> content) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Перемещение папки серверным копированием: листинг и копирование идут одновременно,
+ * копирования отправляются через асинхронный клиент и не занимают потоков, пока ждут ответа MinIO,
+ * старые ключи удаляются пачками только после того, как скопированы все объекты.
+ * Если хоть одно копирование упало, уже созданные копии удаляются и исходная папка остается нетронутой.
+ * Копирование папки идет тем же путем, только без удаления исходных ключей.
+ * Если хранилище умеет переносить папку целиком (локальный диск), перемещение - один rename.
+ */
+@Slf4j
+@Service
+public class FolderMoveEngine {
+
+    private final StorageBackend storageBackend;
+    @Value("${storage.move.parallelism:8}")
+    private int copyParallelism;
+
+    @Autowired
+    public FolderMoveEngine(StorageBackend storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    public void move(MoveOperation operation) {
+        String backendPathFrom = operation.getBackendPathFrom();
+        if (storageBackend.supportsAtomicFolderMove()) {
+            storageBackend.moveObject(backendPathFrom, operation.getBackendPathTo());
+            operation.allObjectsCopied();
+            return;
+        }
+        List<String> sourceKeys = copyTree(backendPathFrom, operation.getBackendPathTo(), "move",
+                operation::objectCopied);
+        Map<String, String> notRemoved = storageBackend.removeObjects(sourceKeys.iterator());
+        if (!notRemoved.isEmpty()) {
+            log.warn("{} source objects of moved folder {} were not removed", notRemoved.size(), backendPathFrom);
+        }
+    }
+
+    public void copy(String backendPathFrom, String backendPathTo) {
+        copyTree(backendPathFrom, backendPathTo, "copy", () -> {
+        });
+    }
+
+    //Возвращает скопированные исходные ключи
+    private List<String> copyTree(String backendPathFrom, String backendPathTo, String operationName,
+                                  Runnable onObjectCopied) {
+        List<String> sourceKeys = new ArrayList<>();
+        List<String> copiedKeys = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> copies = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Semaphore copiesInFlight = new Semaphore(copyParallelism);
+        try {
+            Iterator<StorageBackend.StoredObject> objects =
+                    storageBackend.listObjects(backendPathFrom, FolderTraversalMode.RECURSIVE);
+            while (objects.hasNext() && failure.get() == null) {
+                String sourceKey = objects.next().key();
+                String targetKey = backendPathTo + sourceKey.substring(backendPathFrom.length());
+                sourceKeys.add(sourceKey);
+                copiesInFlight.acquire();
+                copies.add(storageBackend.copyObjectAsync(sourceKey, targetKey)
+                        .whenComplete((ignored, e) -> {
+                            if (e != null) {
+                                failure.compareAndSet(null, e);
+                            } else {
+                                copiedKeys.add(targetKey);
+                                onObjectCopied.run();
+                            }
+                            copiesInFlight.release();
+                        })
+                        .<Void>thenApply(ignored -> null));
+            }
+        } catch (MinioOperationException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            CompletableFuture.allOf(copies.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        }
+
+        if (failure.get() != null) {
+            rollback(backendPathTo, copiedKeys);
+            throw new MinioOperationException("Folder " + operationName + " failed, copied objects were rolled back: ",
+                    failure.get());
+        }
+        return sourceKeys;
+    }
+
+    private void rollback(String backendPathTo, List<String> copiedKeys) {
+        log.warn("Rolling back {} copied objects in {}", copiedKeys.size(), backendPathTo);
+        Map<String, String> notRemoved = storageBackend.removeObjects(copiedKeys.iterator());
+        if (!notRemoved.isEmpty()) {
+            log.error("{} copied objects in {} were not rolled back", notRemoved.size(), backendPathTo);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.skillnez.cloudstorage.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skillnez.cloudstorage.utils.DirectorySort;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Непрозрачный курсор постраничного листинга: ключи keyset-позиции вместе с сортировкой,
+ * для которой они получены, в base64url. Курсор от другой сортировки не принимается.
+ */
+final class ListingCursor {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> CURSOR_TYPE = new TypeReference<>() {
+    };
+
+    private ListingCursor() {
+    }
+
+    static String encode(KeysetScrollPosition position, DirectorySort sort, Sort.Direction direction) {
+        Map<String, Object> cursor = new LinkedHashMap<>();
+        cursor.put("sort", sort.name());
+        cursor.put("direction", direction.name());
+        Map<String, Object> keys = new LinkedHashMap<>();
+        position.getKeys().forEach((key, value) -> keys.put(key, value instanceof Instant ? value.toString() : value));
+        cursor.put("keys", keys);
+        try {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(OBJECT_MAPPER.writeValueAsBytes(cursor));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cursor can't be serialized", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static ScrollPosition decode(String cursor, DirectorySort sort, Sort.Direction direction) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            Map<String, Object> decoded = OBJECT_MAPPER.readValue(
+                    new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8), CURSOR_TYPE);
+            if (!sort.name().equals(decoded.get("sort")) || !direction.name().equals(decoded.get("direction"))) {
+                throw new IllegalArgumentException("Cursor was issued for another sort order");
+            }
+            if (!(decoded.get("keys") instanceof Map<?, ?>)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Map<String, Object> keys = new LinkedHashMap<>();
+            ((Map<String, Object>) decoded.get("keys")).forEach((key, value) -> keys.put(key, switch (key) {
+                case "lastModified" -> Instant.parse((String) value);
+                case "size", "id" -> ((Number) value).longValue();
+                default -> value;
+            }));
+            return ScrollPosition.forward(keys);
+        } catch (JsonProcessingException | ClassCastException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище на локальном диске для однонодовых установок: ключ объекта - путь относительно {@code storage.local.root},
+ * маркер папки - каталог. Запись идет во временный файл и публикуется атомарным {@link Files#move}, поэтому
+ * читатели не видят недописанных файлов. Перенос файла и папки целиком - один rename.
+ * Ограничение файловой системы: файл и папка с одинаковым именем в одном каталоге существовать не могут.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local")
+public class LocalStorageBackend implements StorageBackend {
+
+    //Временные файлы лежат под тем же корнем, чтобы move в итоговый путь был атомарным rename
+    private static final String TEMP_FOLDER = ".tmp";
+    private final Path root;
+    private final Path tempFolder;
+    private final Executor storageTaskExecutor;
+    private final StorageMetrics storageMetrics;
+
+    @Autowired
+    public LocalStorageBackend(@Value("${storage.local.root:./data/storage}") Path root,
+                               @Qualifier("storageTaskExecutor") Executor storageTaskExecutor,
+                               StorageMetrics storageMetrics) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.tempFolder = this.root.resolve(TEMP_FOLDER);
+        this.storageTaskExecutor = storageTaskExecutor;
+        this.storageMetrics = storageMetrics;
+        Files.createDirectories(tempFolder);
+        log.info("Local storage backend at {}", this.root);
+    }
+
+    @Override
+    public String putObject(String key, InputStream content, long size, String contentType) {
+        Path target = resolve(key);
+        return storageMetrics.recordUnchecked(StorageMetrics.PUT, () -> {
+            try {
+                if (isFolderKey(key)) {
+                    Files.createDirectories(target);
+                    return etag(Files.readAttributes(target, BasicFileAttributes.class));
+                }
+                return publish(target, temp -> {
+                    long written;
+                    try (OutputStream outputStream = Files.newOutputStream(temp)) {
+                        written = content.transferTo(outputStream);
+                    }
+                    if (size >= 0 && written != size) {
+                        throw new IOException("Expected " + size + " bytes, received " + written);
+                    }
+                });
+            } catch (IOException e) {
+                throw new MinioOperationException("Object put error: " + key, e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> putObjectAsync(String key, InputStream content, long size, String contentType) {
+        return CompletableFuture.supplyAsync(() -> putObject(key, content, size, contentType), storageTaskExecutor);
+    }
+
+    @Override
+    public InputStream getObject(String key) {
+        Path path = resolve(key);
+        return storageMetrics.recordUnchecked(StorageMetrics.GET, () -> {
+            try {
+                return Files.newInputStream(path);
+            } catch (IOException e) {
+                throw new MinioOperationException("Object get error: " + key, e);
+            }
+        });
+    }
+
+    @Override
+    public InputStream getObject(String key, long offset, long length) {
+        Path path = resolve(key);
+        return storageMetrics.recordUnchecked(StorageMetrics.GET, () -> {
+            try {
+                return openRange(path, offset, length);
+            } catch (IOException e) {
+                throw new MinioOperationException("Object get error: " + key, e);
+            }
+        });
+    }
+
+    @Override
+    public Optional<StoredObject> statObject(String key) {
+        Path path = resolve(key);
+        return storageMetrics.recordUnchecked(StorageMetrics.STAT, () -> {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isDirectory() != isFolderKey(key)) {
+                    return Optional.empty();
+                }
+                return Optional.of(toStoredObject(key, attributes));
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            } catch (IOException e) {
+                throw new MinioOperationException("Object stat error: " + key, e);
+            }
+        });
+    }
+
+    @Override
+    public String copyObject(String sourceKey, String targetKey) {
+        Path source = resolve(sourceKey);
+        Path target = resolve(targetKey);
+        return storageMetrics.recordUnchecked(StorageMetrics.COPY, () -> {
+            try {
+                if (isFolderKey(sourceKey)) {
+                    Files.createDirectories(target);
+                    return etag(Files.readAttributes(target, BasicFileAttributes.class));
+                }
+                //Files.copy на Linux копирует внутри ядра (copy_file_range), данные не проходят через JVM
+                return publish(target, temp -> Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING));
+            } catch (IOException e) {
+                throw new MinioOperationException("Object copy error: " + sourceKey, e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> copyObjectAsync(String sourceKey, String targetKey) {
+        return CompletableFuture.supplyAsync(() -> copyObject(sourceKey, targetKey), storageTaskExecutor);
+    }
+
+    @Override
+    public String composeObject(String key, List<String> sourceKeys, String contentType) {
+        Path targetPath = resolve(key);
+        List<Path> sources = sourceKeys.stream().map(this::resolve).toList();
+        return storageMetrics.recordUnchecked(StorageMetrics.COMPOSE, () -> {
+            try {
+                return publish(targetPath, temp -> {
+                    try (FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                        for (Path sourcePath : sources) {
+                            try (FileChannel source = FileChannel.open(sourcePath, StandardOpenOption.READ)) {
+                                long size = source.size();
+                                for (long position = 0; position < size; ) {
+                                    position += source.transferTo(position, size - position, target);
+                                }
+                            }
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                throw new MinioOperationException("Object compose error: " + key, e);
+            }
+        });
+    }
+
+    //Маркер непустой папки не удаляется: как и в S3, папка остается, пока в ней есть объекты
+    @Override
+    public void removeObject(String key) {
+        Path path = resolve(key);
+        storageMetrics.recordUnchecked(StorageMetrics.REMOVE, () -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (DirectoryNotEmptyException e) {
+                log.debug("Folder {} is not empty and was kept", key);
+            } catch (IOException e) {
+                throw new MinioOperationException("Object remove error: ", e);
+            }
+            return null;
+        });
+    }
+
+    //В обратном порядке ключей вложенные объекты удаляются раньше своих папок
+    @Override
+    public Map<String, String> removeObjects(Iterator<String> keys) {
+        List<String> sortedKeys = new ArrayList<>();
+        keys.forEachRemaining(sortedKeys::add);
+        sortedKeys.sort(Comparator.reverseOrder());
+        Map<String, String> failedObjects = new LinkedHashMap<>();
+        for (String key : sortedKeys) {
+            try {
+                removeObject(key);
+            } catch (MinioOperationException e) {
+                log.warn("Object {} was not removed", key, e.getCause());
+                failedObjects.put(key, String.valueOf(e.getCause().getMessage()));
+            }
+        }
+        return failedObjects;
+    }
+
+    @Override
+    public Map<String, String> removeObjectsByPrefix(String prefix) {
+        Iterator<StoredObject> objects = listObjects(prefix, FolderTraversalMode.RECURSIVE);
+        return removeObjects(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return objects.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return objects.next().key();
+            }
+        });
+    }
+
+    @Override
+    public Iterator<StoredObject> listObjects(String prefix, FolderTraversalMode traversalMode) {
+        int slash = prefix.lastIndexOf('/');
+        String folderKey = prefix.substring(0, slash + 1);
+        String namePrefix = prefix.substring(slash + 1);
+        Path folder = folderKey.isEmpty() ? root : resolve(folderKey);
+        if (!Files.isDirectory(folder)) {
+            return Collections.emptyIterator();
+        }
+        return storageMetrics.recordListing(
+                new FolderIterator(folder, folderKey, namePrefix, FolderTraversalMode.RECURSIVE == traversalMode));
+    }
+
+    @Override
+    public void moveObject(String sourceKey, String targetKey) {
+        Path source = resolve(sourceKey);
+        Path target = resolve(targetKey);
+        storageMetrics.recordUnchecked(StorageMetrics.MOVE, () -> {
+            try {
+                Files.createDirectories(target.getParent());
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new MinioOperationException("Object move error: " + sourceKey, e);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean supportsAtomicFolderMove() {
+        return true;
+    }
+
+    @Override
+    public Optional<Path> localFile(String key) {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    private static InputStream openRange(Path path, long offset, long length) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        channel.position(offset);
+        return new FilterInputStream(Channels.newInputStream(channel)) {
+            private long remaining = length;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b != -1) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int read = super.read(b, off, (int) Math.min(len, remaining));
+                if (read > 0) {
+                    remaining -= read;
+                }
+                return read;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface TempFileWriter {
+        void write(Path temp) throws IOException;
+    }
+
+    private String publish(Path target, TempFileWriter writer) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(tempFolder, "object-", null);
+        try {
+            writer.write(temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return etag(Files.readAttributes(target, BasicFileAttributes.class));
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.equals(root) || path.startsWith(tempFolder)) {
+            throw new IllegalArgumentException("Invalid object key: " + key);
+        }
+        return path;
+    }
+
+    private StoredObject toStoredObject(String key, BasicFileAttributes attributes) {
+        return new StoredObject(key, attributes.isDirectory() ? 0 : attributes.size(), etag(attributes),
+                attributes.lastModifiedTime().toInstant());
+    }
+
+    private static boolean isFolderKey(String key) {
+        return key.endsWith("/");
+    }
+
+    //Без хеширования содержимого: меняется при каждой перезаписи, этого достаточно для If-None-Match и If-Range
+    private static String etag(BasicFileAttributes attributes) {
+        return Long.toHexString(attributes.size()) + "-"
+               + Long.toHexString(attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS));
+    }
+
+    /**
+     * Ленивый обход каталога через DirectoryStream в порядке имен, как листинг S3.
+     * Каждый каталог читается, только когда обход до него дошел.
+     */
+    private final class FolderIterator implements Iterator<StoredObject> {
+
+        private final boolean recursive;
+        private final Deque<Iterator<Path>> folders = new ArrayDeque<>();
+        private StoredObject pending;
+
+        private FolderIterator(Path folder, String folderKey, String namePrefix, boolean recursive) {
+            this.recursive = recursive;
+            if (recursive && namePrefix.isEmpty() && !folderKey.isEmpty()) {
+                pending = new StoredObject(folderKey, 0, null, null);
+            }
+            folders.push(children(folder, namePrefix));
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pending == null && !folders.isEmpty()) {
+                Iterator<Path> current = folders.peek();
+                if (!current.hasNext()) {
+                    folders.pop();
+                    continue;
+                }
+                Path path = current.next();
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    String key = root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+                    if (attributes.isDirectory()) {
+                        key += "/";
+                        if (recursive) {
+                            folders.push(children(path, ""));
+                        }
+                    }
+                    pending = toStoredObject(key, attributes);
+                } catch (NoSuchFileException e) {
+                    //Удален после чтения каталога
+                } catch (IOException e) {
+                    throw new MinioOperationException("Object listing error: ", e);
+                }
+            }
+            return pending != null;
+        }
+
+        @Override
+        public StoredObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            StoredObject next = pending;
+            pending = null;
+            return next;
+        }
+
+        private Iterator<Path> children(Path folder, String namePrefix) {
+            List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder,
+                    path -> path.getFileName().toString().startsWith(namePrefix) && !path.equals(tempFolder))) {
+                stream.forEach(children::add);
+            } catch (NoSuchFileException e) {
+                return Collections.emptyIterator();
+            } catch (IOException e) {
+                throw new MinioOperationException("Object listing error: ", e);
+            }
+            children.sort(Comparator.comparing(path -> path.getFileName().toString()));
+            return children.iterator();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import io.minio.*;
+import io.minio.errors.MinioException;
+import io.minio.messages.Item;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Неблокирующий вариант {@link MinioClientService} поверх MinioAsyncClient. Запросы выполняются
+ * диспетчером OkHttp, вызывающий поток не ждет ответа. Ошибки приходят в future как MinioOperationException.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio", matchIfMissing = true)
+public class MinioAsyncClientService {
+
+    private final MinioAsyncClient minioAsyncClient;
+    private final StorageMetrics storageMetrics;
+    @Value("${minio.bucket-name}")
+    private String bucketName;
+
+    @Autowired
+    public MinioAsyncClientService(MinioAsyncClient minioAsyncClient, StorageMetrics storageMetrics) {
+        this.minioAsyncClient = minioAsyncClient;
+        this.storageMetrics = storageMetrics;
+    }
+
+    public CompletableFuture<ObjectWriteResponse> putObject(String backendPath, InputStream file, long fileSize,
+                                                            String contentType) {
+        return execute(StorageMetrics.PUT, "Object put error: " + backendPath, () -> minioAsyncClient.putObject(
+                PutObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(backendPath)
+                        .stream(file, fileSize, -1)
+                        .contentType(contentType)
+                        .build()));
+    }
+
+    public CompletableFuture<InputStream> getObject(String backendPath) {
+        return execute(StorageMetrics.GET, "Object get error: " + backendPath, () -> minioAsyncClient.getObject(
+                GetObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(backendPath)
+                        .build())
+                .<InputStream>thenApply(response -> response));
+    }
+
+    public CompletableFuture<StatObjectResponse> statObject(String backendPath) {
+        return execute(StorageMetrics.STAT, "Object stat error: " + backendPath, () -> minioAsyncClient.statObject(
+                StatObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(backendPath)
+                        .build()));
+    }
+
+    public CompletableFuture<ObjectWriteResponse> copyObject(String backendPathFrom, String backendPathTo) {
+        return execute(StorageMetrics.COPY, "Object copy error: " + backendPathFrom, () -> minioAsyncClient.copyObject(
+                CopyObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(backendPathTo)
+                        .source(CopySource.builder()
+                                .bucket(bucketName)
+                                .object(backendPathFrom)
+                                .build())
+                        .build()));
+    }
+
+    public CompletableFuture<Void> removeObject(String backendPath) {
+        return execute(StorageMetrics.REMOVE, "Object remove error: " + backendPath, () -> minioAsyncClient.removeObject(
+                RemoveObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(backendPath)
+                        .build()));
+    }
+
+    //SDK не дает future-листинга: страницы по 1000 ключей запрашиваются лениво по мере обхода
+    public Iterable<Result<Item>> listObjects(String backendPath, FolderTraversalMode traversalMode) {
+        return storageMetrics.recordListing(minioAsyncClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .prefix(backendPath)
+                        .recursive(FolderTraversalMode.RECURSIVE == traversalMode)
+                        .build()));
+    }
+
+    private <T> CompletableFuture<T> execute(String operation, String errorMessage,
+                                             StorageMetrics.MinioCall<CompletableFuture<T>> asyncCall) {
+        CompletableFuture<T> future;
+        try {
+            future = storageMetrics.recordAsync(operation, asyncCall);
+        } catch (IOException | GeneralSecurityException | MinioException e) {
+            return CompletableFuture.failedFuture(new MinioOperationException(errorMessage, e));
+        }
+        return future.exceptionallyCompose(e -> {
+            Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+            return CompletableFuture.failedFuture(new MinioOperationException(errorMessage, cause));
+        });
+    }
+}
@@ -5,30 +5,67 @@ import com.skillnez.cloudstorage.utils.FolderTraversalMode;
 import io.minio.*;
 import io.minio.errors.ErrorResponseException;
 import io.minio.errors.MinioException;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio", matchIfMissing = true)
 public class MinioClientService {
 
     private final MinioClient minioClient;
+    private final MinioClient presignedUrlMinioClient;
+    private final Executor storageTaskExecutor;
+    private final StorageMetrics storageMetrics;
     @Value("${minio.bucket-name}")
     private String bucketName;
+    @Value("${minio.presigned.endpoint:${minio.url}}")
+    private String presignedEndpoint;
+    @Value("${minio.stream-part-size:10485760}")
+    private long streamPartSize;
+    @Value("${minio.remove.batch-size:1000}")
+    private int removeBatchSize;
+    @Value("${minio.remove.parallelism:4}")
+    private int removeParallelism;
 
     @Autowired
-    public MinioClientService(MinioClient minioClient) {
+    public MinioClientService(MinioClient minioClient,
+                              @Qualifier("presignedUrlMinioClient") MinioClient presignedUrlMinioClient,
+                              @Qualifier("storageTaskExecutor") Executor storageTaskExecutor,
+                              StorageMetrics storageMetrics) {
         this.minioClient = minioClient;
+        this.presignedUrlMinioClient = presignedUrlMinioClient;
+        this.storageTaskExecutor = storageTaskExecutor;
+        this.storageMetrics = storageMetrics;
     }
 
-    public void copyObject(String backendPathFrom, String backendPathTo) {
+    public ObjectWriteResponse copyObject(String backendPathFrom, String backendPathTo) {
         try {
-            minioClient.copyObject(
+            return storageMetrics.record(StorageMetrics.COPY, () -> minioClient.copyObject(
                     CopyObjectArgs.builder()
                             .bucket(bucketName)
                             .object(backendPathTo)
@@ -36,21 +73,55 @@ public class MinioClientService {
                                     .bucket(bucketName)
                                     .object(backendPathFrom)
                                     .build())
-                            .build());
+                            .build()));
         } catch (IOException | GeneralSecurityException | MinioException e) {
             throw new MinioOperationException("Object copy error: ", e);
         }
     }
 
-    public void putObject(String backendPath, InputStream file, long fileSize,
+    public ObjectWriteResponse composeObject(String backendPath, List<String> sourcePaths, String contentType) {
+        List<ComposeSource> sources = sourcePaths.stream()
+                .map(sourcePath -> ComposeSource.builder()
+                        .bucket(bucketName)
+                        .object(sourcePath)
+                        .build())
+                .toList();
+        try {
+            return storageMetrics.record(StorageMetrics.COMPOSE, () -> minioClient.composeObject(
+                    ComposeObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(backendPath)
+                            .sources(sources)
+                            .headers(Map.of("Content-Type", contentType))
+                            .build()));
+        } catch (IOException | GeneralSecurityException | MinioException e) {
+            throw new MinioOperationException("Object compose error: " + backendPath, e);
+        }
+    }
+
+    public ObjectWriteResponse putObject(String backendPath, InputStream file, long fileSize,
                                              String contentType) {
         try {
-            minioClient.putObject(
+            return storageMetrics.record(StorageMetrics.PUT, () -> minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucketName)
                             .object(backendPath)
                             .stream(file, fileSize, -1)
-                            .contentType(contentType).build());
+                            .contentType(contentType).build()));
+        } catch (IOException | GeneralSecurityException | MinioException e) {
+            throw new MinioOperationException("Object put error: " + backendPath, e);
+        }
+    }
+
+    //Для потоков неизвестной длины: MinIO держит в памяти не больше одной части размером streamPartSize
+    public ObjectWriteResponse putObject(String backendPath, InputStream file, String contentType) {
+        try {
+            return storageMetrics.record(StorageMetrics.PUT, () -> minioClient.putObject(
+                    PutObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(backendPath)
+                            .stream(file, -1, streamPartSize)
+                            .contentType(contentType).build()));
         } catch (IOException | GeneralSecurityException | MinioException e) {
             throw new MinioOperationException("Object put error: " + backendPath, e);
         }
@@ -58,12 +129,12 @@ public class MinioClientService {
 
     public StatObjectResponse statObject(String backendPath) throws ErrorResponseException {
         try {
-            return minioClient.statObject(
+            return storageMetrics.record(StorageMetrics.STAT, () -> minioClient.statObject(
                     StatObjectArgs.builder()
                             .bucket(bucketName)
                             .object(backendPath)
                             .build()
-            );
+            ));
         } catch (ErrorResponseException e) {
             throw e;
         } catch (IOException | GeneralSecurityException | MinioException e) {
@@ -73,35 +144,176 @@ public class MinioClientService {
 
     public InputStream getObject(String backendPath) {
         try {
-            return minioClient.getObject(
+            return storageMetrics.record(StorageMetrics.GET, () -> minioClient.getObject(
                     GetObjectArgs.builder()
                             .bucket(bucketName)
                             .object(backendPath)
-                            .build());
+                            .build()));
         } catch (IOException | GeneralSecurityException | MinioException e) {
             throw new MinioOperationException("Object get error: " + backendPath, e);
         }
     }
 
-    public void removeObject(String backendPath) {
+    public InputStream getObject(String backendPath, long offset, long length) {
+        try {
+            return storageMetrics.record(StorageMetrics.GET, () -> minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(bucketName)
+                            .object(backendPath)
+                            .offset(offset)
+                            .length(length)
+                            .build()));
+        } catch (IOException | GeneralSecurityException | MinioException e) {
+            throw new MinioOperationException("Object get error: " + backendPath, e);
+        }
+    }
+
+    public String getPresignedObjectUrl(Method method, String backendPath, Duration expiry,
+                                        Map<String, String> extraQueryParams) {
         try {
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
+            return presignedUrlMinioClient.getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .method(method)
                             .bucket(bucketName)
                             .object(backendPath)
+                            .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                            .extraQueryParams(extraQueryParams)
                             .build());
+        } catch (IOException | GeneralSecurityException | MinioException e) {
+            throw new MinioOperationException("Object presign error: " + backendPath, e);
+        }
+    }
+
+    //Адрес бакета, на который браузер отправляет форму из getPresignedPostFormData
+    public String getPresignedPostUrl() {
+        return presignedEndpoint.replaceAll("/+$", "") + "/" + bucketName;
+    }
+
+    //Политика принимает только объект с этим ключом и ровно size байт; поле key в подписанные поля не входит
+    public Map<String, String> getPresignedPostFormData(String backendPath, long size, Duration expiry) {
+        PostPolicy policy = new PostPolicy(bucketName, ZonedDateTime.now().plus(expiry));
+        policy.addEqualsCondition("key", backendPath);
+        policy.addContentLengthRangeCondition(size, size);
+        try {
+            Map<String, String> formData = new LinkedHashMap<>(presignedUrlMinioClient.getPresignedPostFormData(policy));
+            formData.put("key", backendPath);
+            return formData;
+        } catch (IOException | GeneralSecurityException | MinioException e) {
+            throw new MinioOperationException("Object presign error: " + backendPath, e);
+        }
+    }
+
+    public void removeObject(String backendPath) {
+        try {
+            storageMetrics.record(StorageMetrics.REMOVE, () -> {
+                minioClient.removeObject(
+                        RemoveObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(backendPath)
+                                .build());
+                return null;
+            });
         } catch (IOException | GeneralSecurityException | MinioException e) {
             throw new MinioOperationException("Object remove error: ", e);
         }
     }
 
+    /**
+     * Удаляет все объекты с префиксом пачками через multi-object delete.
+     * Листинг и удаление идут параллельно: очередная страница уходит на удаление, пока читается следующая.
+     *
+     * @return ключи, которые не удалось удалить, и причина для каждого
+     */
+    public Map<String, String> removeObjectsByPrefix(String prefix) {
+        Iterator<Item> items = iterateObjects(prefix, FolderTraversalMode.RECURSIVE);
+        return removeObjects(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return items.next().objectName();
+            }
+        });
+    }
+
+    public Map<String, String> removeObjects(Iterator<String> keys) {
+        Map<String, String> failedObjects = new ConcurrentHashMap<>();
+        Semaphore batchesInFlight = new Semaphore(removeParallelism);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        try {
+            while (keys.hasNext()) {
+                List<String> batch = new ArrayList<>(removeBatchSize);
+                while (keys.hasNext() && batch.size() < removeBatchSize) {
+                    batch.add(keys.next());
+                }
+                batchesInFlight.acquire();
+                batches.add(CompletableFuture
+                        .runAsync(() -> removeBatch(batch, failedObjects), storageTaskExecutor)
+                        .whenComplete((result, e) -> batchesInFlight.release()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MinioOperationException("Object remove interrupted: ", e);
+        } finally {
+            CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).join();
+        }
+        return failedObjects;
+    }
+
+    private void removeBatch(List<String> batch, Map<String, String> failedObjects) {
+        try {
+            //removeObjects ленивый: запрос уходит при обходе результата, поэтому в таймер попадает весь обход
+            storageMetrics.record(StorageMetrics.REMOVE, () -> {
+                Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                        RemoveObjectsArgs.builder()
+                                .bucket(bucketName)
+                                .objects(batch.stream().map(DeleteObject::new).toList())
+                                .build());
+                for (Result<DeleteError> result : results) {
+                    DeleteError error = result.get();
+                    log.warn("Object {} was not removed: {}", error.objectName(), error.message());
+                    failedObjects.put(error.objectName(), String.valueOf(error.message()));
+                }
+                return null;
+            });
+        } catch (IOException | GeneralSecurityException | MinioException e) {
+            log.warn("Batch of {} objects was not removed", batch.size(), e);
+            for (String key : batch) {
+                failedObjects.putIfAbsent(key, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    //Ленивый обход листинга, ошибки MinIO заворачиваются в MinioOperationException
+    public Iterator<Item> iterateObjects(String backendPath, FolderTraversalMode traversalMode) {
+        Iterator<Result<Item>> listing = listObjects(backendPath, traversalMode).iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return listing.hasNext();
+            }
+
+            @Override
+            public Item next() {
+                try {
+                    return listing.next().get();
+                } catch (IOException | GeneralSecurityException | MinioException e) {
+                    throw new MinioOperationException("Object listing error: ", e);
+                }
+            }
+        };
+    }
+
     public Iterable<Result<Item>> listObjects(String backendPath, FolderTraversalMode traversalMode) {
         boolean searchMode = (FolderTraversalMode.RECURSIVE == traversalMode);
-        return minioClient.listObjects(
+        return storageMetrics.recordListing(minioClient.listObjects(
                 ListObjectsArgs.builder()
                         .bucket(bucketName)
                         .prefix(backendPath)
                         .recursive(searchMode)
-                        .build());
+                        .build()));
     }
 }
@@ -0,0 +1,140 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import io.minio.ObjectWriteResponse;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+import io.minio.messages.Item;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio", matchIfMissing = true)
+public class MinioStorageBackend implements StorageBackend {
+
+    private static final String NO_SUCH_KEY = "NoSuchKey";
+    private final MinioClientService minioClientService;
+    private final MinioAsyncClientService minioAsyncClientService;
+
+    @Autowired
+    public MinioStorageBackend(MinioClientService minioClientService,
+                               MinioAsyncClientService minioAsyncClientService) {
+        this.minioClientService = minioClientService;
+        this.minioAsyncClientService = minioAsyncClientService;
+    }
+
+    @Override
+    public String putObject(String key, InputStream content, long size, String contentType) {
+        ObjectWriteResponse response = (size < 0)
+                ? minioClientService.putObject(key, content, contentType)
+                : minioClientService.putObject(key, content, size, contentType);
+        return response.etag();
+    }
+
+    @Override
+    public CompletableFuture<String> putObjectAsync(String key, InputStream content, long size, String contentType) {
+        return minioAsyncClientService.putObject(key, content, size, contentType).thenApply(ObjectWriteResponse::etag);
+    }
+
+    @Override
+    public InputStream getObject(String key) {
+        return minioClientService.getObject(key);
+    }
+
+    @Override
+    public InputStream getObject(String key, long offset, long length) {
+        return minioClientService.getObject(key, offset, length);
+    }
+
+    @Override
+    public Optional<StoredObject> statObject(String key) {
+        try {
+            StatObjectResponse response = minioClientService.statObject(key);
+            return Optional.of(new StoredObject(key, response.size(), response.etag(),
+                    response.lastModified() == null ? null : response.lastModified().toInstant()));
+        } catch (ErrorResponseException e) {
+            //Пустой результат - только для отсутствующего объекта; отказ в доступе и прочие ответы - ошибка хранилища
+            if (NO_SUCH_KEY.equals(e.errorResponse().code())) {
+                return Optional.empty();
+            }
+            throw new MinioOperationException("Object stat error: " + key, e);
+        }
+    }
+
+    @Override
+    public String copyObject(String sourceKey, String targetKey) {
+        return minioClientService.copyObject(sourceKey, targetKey).etag();
+    }
+
+    @Override
+    public CompletableFuture<String> copyObjectAsync(String sourceKey, String targetKey) {
+        return minioAsyncClientService.copyObject(sourceKey, targetKey).thenApply(ObjectWriteResponse::etag);
+    }
+
+    @Override
+    public String composeObject(String key, List<String> sourceKeys, String contentType) {
+        return minioClientService.composeObject(key, sourceKeys, contentType).etag();
+    }
+
+    @Override
+    public void removeObject(String key) {
+        minioClientService.removeObject(key);
+    }
+
+    @Override
+    public Map<String, String> removeObjects(Iterator<String> keys) {
+        return minioClientService.removeObjects(keys);
+    }
+
+    @Override
+    public Map<String, String> removeObjectsByPrefix(String prefix) {
+        return minioClientService.removeObjectsByPrefix(prefix);
+    }
+
+    @Override
+    public Iterator<StoredObject> listObjects(String prefix, FolderTraversalMode traversalMode) {
+        Iterator<Item> items = minioClientService.iterateObjects(prefix, traversalMode);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public StoredObject next() {
+                Item item = items.next();
+                return new StoredObject(item.objectName(), item.size(), item.etag(),
+                        (item.isDir() || item.lastModified() == null) ? null : item.lastModified().toInstant());
+            }
+        };
+    }
+
+    @Override
+    public boolean supportsPresignedUrls() {
+        return true;
+    }
+
+    @Override
+    public String getPresignedObjectUrl(HttpMethod method, String key, Duration expiry,
+                                        Map<String, String> extraQueryParams) {
+        return minioClientService.getPresignedObjectUrl(Method.valueOf(method.name()), key, expiry, extraQueryParams);
+    }
+
+    @Override
+    public PresignedPost getPresignedPostForm(String key, long size, Duration expiry) {
+        return new PresignedPost(minioClientService.getPresignedPostUrl(),
+                minioClientService.getPresignedPostFormData(key, size, expiry));
+    }
+}
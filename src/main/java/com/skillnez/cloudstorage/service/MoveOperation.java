@@ -0,0 +1,64 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.dto.MoveStatus;
+import com.skillnez.cloudstorage.dto.MoveStatusResponseDto;
+import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Getter
+public class MoveOperation {
+
+    private final String id;
+    private final Long userId;
+    private final String backendPathFrom;
+    private final String backendPathTo;
+    private final long totalObjects;
+    private final AtomicLong copiedObjects = new AtomicLong();
+    private volatile MoveStatus status = MoveStatus.RUNNING;
+    private volatile String message;
+    private volatile StorageInfoResponseDto resource;
+    private volatile Instant finishedAt;
+
+    public MoveOperation(String id, Long userId, String backendPathFrom, String backendPathTo, long totalObjects) {
+        this.id = id;
+        this.userId = userId;
+        this.backendPathFrom = backendPathFrom;
+        this.backendPathTo = backendPathTo;
+        this.totalObjects = totalObjects;
+    }
+
+    public void objectCopied() {
+        copiedObjects.incrementAndGet();
+    }
+
+    //Папка перенесена одной операцией хранилища
+    public void allObjectsCopied() {
+        copiedObjects.set(totalObjects);
+    }
+
+    public void complete(StorageInfoResponseDto resource) {
+        this.resource = resource;
+        this.status = MoveStatus.COMPLETED;
+        this.finishedAt = Instant.now();
+    }
+
+    public void fail(String message) {
+        this.message = message;
+        this.status = MoveStatus.FAILED;
+        this.finishedAt = Instant.now();
+    }
+
+    public MoveStatusResponseDto toResponseDto() {
+        return MoveStatusResponseDto.builder()
+                .id(id)
+                .status(status)
+                .copiedObjects(copiedObjects.get())
+                .totalObjects(totalObjects)
+                .message(message)
+                .resource(resource)
+                .build();
+    }
+}
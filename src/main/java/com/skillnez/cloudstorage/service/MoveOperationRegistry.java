@@ -0,0 +1,68 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.dto.MoveStatus;
+import com.skillnez.cloudstorage.exception.MoveInProgressException;
+import com.skillnez.cloudstorage.utils.PathUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Прогресс хранится в памяти узла, который выполняет перемещение
+@Service
+public class MoveOperationRegistry {
+
+    private final Map<String, MoveOperation> operations = new ConcurrentHashMap<>();
+    private final ReentrantLock registrationLock = new ReentrantLock();
+    @Value("${storage.move.status-retention:PT15M}")
+    private Duration statusRetention;
+
+    public MoveOperation register(Long userId, String backendPathFrom, String backendPathTo, long totalObjects) {
+        evictFinished();
+        registrationLock.lock();
+        try {
+            checkNotMoving(backendPathFrom);
+            checkNotMoving(backendPathTo);
+            MoveOperation operation = new MoveOperation(UUID.randomUUID().toString(), userId,
+                    backendPathFrom, backendPathTo, totalObjects);
+            operations.put(operation.getId(), operation);
+            return operation;
+        } finally {
+            registrationLock.unlock();
+        }
+    }
+
+    /**
+     * Запись внутрь переносимой папки не попала бы в листинг копирования, а ее строка индекса
+     * уехала бы вместе с папкой на несуществующий объект, поэтому такие запросы отклоняются до конца переноса.
+     */
+    public void checkNotMoving(String backendPath) {
+        for (MoveOperation operation : operations.values()) {
+            if (operation.getStatus() == MoveStatus.RUNNING
+                && (PathUtils.overlaps(backendPath, operation.getBackendPathFrom())
+                    || PathUtils.overlaps(backendPath, operation.getBackendPathTo()))) {
+                throw new MoveInProgressException("Path is being moved by another operation, try again later");
+            }
+        }
+    }
+
+    public MoveOperation get(String id, Long userId) {
+        MoveOperation operation = operations.get(id);
+        if (operation == null || !operation.getUserId().equals(userId)) {
+            throw new NoSuchElementException("Move operation not found");
+        }
+        return operation;
+    }
+
+    private void evictFinished() {
+        Instant threshold = Instant.now().minus(statusRetention);
+        operations.values().removeIf(operation ->
+                operation.getFinishedAt() != null && operation.getFinishedAt().isBefore(threshold));
+    }
+}
@@ -0,0 +1,108 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import org.springframework.http.HttpMethod;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Хранилище содержимого объектов по ключам вида {@code user-1-files/docs/report.pdf}; ключ на "/" - маркер папки.
+ * Реализация выбирается свойством {@code storage.backend}: {@link MinioStorageBackend} (по умолчанию)
+ * или {@link LocalStorageBackend} для однонодовых установок без MinIO.
+ * Ошибки хранилища приходят как MinioOperationException, асинхронные - внутри future.
+ */
+public interface StorageBackend {
+
+    //lastModified может быть null, например у папок в листинге MinIO
+    record StoredObject(String key, long size, String etag, Instant lastModified) {
+    }
+
+    //Форма для загрузки браузером напрямую в хранилище: поля formData отправляются POST-запросом на url вместе с файлом
+    record PresignedPost(String url, Map<String, String> formData) {
+    }
+
+    //size = -1, если длина заранее неизвестна. Возвращает etag записанного объекта
+    String putObject(String key, InputStream content, long size, String contentType);
+
+    CompletableFuture<String> putObjectAsync(String key, InputStream content, long size, String contentType);
+
+    InputStream getObject(String key);
+
+    InputStream getObject(String key, long offset, long length);
+
+    Optional<StoredObject> statObject(String key);
+
+    String copyObject(String sourceKey, String targetKey);
+
+    CompletableFuture<String> copyObjectAsync(String sourceKey, String targetKey);
+
+    String composeObject(String key, List<String> sourceKeys, String contentType);
+
+    void removeObject(String key);
+
+    /**
+     * @return ключи, которые не удалось удалить, и причина для каждого
+     */
+    Map<String, String> removeObjects(Iterator<String> keys);
+
+    Map<String, String> removeObjectsByPrefix(String prefix);
+
+    //Ленивый обход. Рекурсивный листинг папки включает и маркер самой папки
+    Iterator<StoredObject> listObjects(String prefix, FolderTraversalMode traversalMode);
+
+    default boolean supportsPresignedUrls() {
+        return false;
+    }
+
+    default String getPresignedObjectUrl(HttpMethod method, String key, Duration expiry,
+                                         Map<String, String> extraQueryParams) {
+        throw presignedUrlsNotSupported();
+    }
+
+    //Подпись фиксирует ключ и точный размер объекта, поэтому по форме нельзя записать ничего другого
+    default PresignedPost getPresignedPostForm(String key, long size, Duration expiry) {
+        throw presignedUrlsNotSupported();
+    }
+
+    //Переносит объект или папку целиком. По умолчанию копированием и удалением, локально - одним rename
+    default void moveObject(String sourceKey, String targetKey) {
+        copyObject(sourceKey, targetKey);
+        removeObject(sourceKey);
+    }
+
+    //true, если moveObject переносит папку целиком за одну операцию
+    default boolean supportsAtomicFolderMove() {
+        return false;
+    }
+
+    //Файл на диске, если объект хранится локально: его можно отдать клиенту через sendfile
+    default Optional<Path> localFile(String key) {
+        return Optional.empty();
+    }
+
+    private static MinioOperationException presignedUrlsNotSupported() {
+        return new MinioOperationException("Presigned URLs are not supported by this storage backend", null);
+    }
+
+    //Дожидается результата и пробрасывает исходное исключение вместо CompletionException
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
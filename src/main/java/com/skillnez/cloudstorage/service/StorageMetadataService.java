@@ -0,0 +1,430 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.dto.ResourceType;
+import com.skillnez.cloudstorage.entity.StorageObject;
+import com.skillnez.cloudstorage.repository.BlobReferences;
+import com.skillnez.cloudstorage.repository.StorageObjectRepository;
+import com.skillnez.cloudstorage.repository.StorageTotals;
+import com.skillnez.cloudstorage.utils.DirectorySort;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import com.skillnez.cloudstorage.utils.PathUtils;
+import com.skillnez.cloudstorage.utils.SearchMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.support.WindowIterator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Индекс метаданных объектов пользователя в Postgres.
+ * Каждая мутация в {@link FileSystemService} сначала выполняется в хранилище, затем записывается сюда,
+ * поэтому проверки существования и листинги не ходят в хранилище.
+ */
+@Slf4j
+@Service
+@Transactional
+public class StorageMetadataService {
+
+    private static final char LIKE_ESCAPE = '!';
+    private static final int COPY_PAGE_SIZE = 1000;
+    private final StorageObjectRepository storageObjectRepository;
+    private final StorageBackend storageBackend;
+    private final DirectoryListingCache directoryListingCache;
+    private final StorageUsageService storageUsageService;
+    private final BlobStore blobStore;
+    private final Set<String> indexedRoots = ConcurrentHashMap.newKeySet();
+    private final Map<String, ReentrantLock> indexingLocks = new ConcurrentHashMap<>();
+    private final TransactionTemplate indexingTransaction;
+
+    @Autowired
+    public StorageMetadataService(StorageObjectRepository storageObjectRepository,
+                                  StorageBackend storageBackend,
+                                  DirectoryListingCache directoryListingCache,
+                                  StorageUsageService storageUsageService,
+                                  BlobStore blobStore,
+                                  PlatformTransactionManager transactionManager) {
+        this.storageObjectRepository = storageObjectRepository;
+        this.storageBackend = storageBackend;
+        this.directoryListingCache = directoryListingCache;
+        this.storageUsageService = storageUsageService;
+        this.blobStore = blobStore;
+        this.indexingTransaction = new TransactionTemplate(transactionManager);
+        this.indexingTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean exists(String path) {
+        return storageObjectRepository.existsByPath(path);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean existsAll(Collection<String> distinctPaths) {
+        if (distinctPaths.isEmpty()) {
+            return true;
+        }
+        return storageObjectRepository.countByPathIn(distinctPaths) == distinctPaths.size();
+    }
+
+    @Transactional(readOnly = true)
+    public Set<String> findExisting(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(storageObjectRepository.findPathsByPathIn(paths));
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<StorageObject> find(String path) {
+        return storageObjectRepository.findByPath(path);
+    }
+
+    @Transactional(readOnly = true)
+    public List<StorageObject> findAll(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return List.of();
+        }
+        return storageObjectRepository.findAllByPathIn(paths);
+    }
+
+    @Transactional(readOnly = true)
+    public long sizeOfTree(String folderPath) {
+        return storageObjectRepository.sumByPathPrefixAndType(likePrefix(folderPath), ResourceType.FILE).getBytes();
+    }
+
+    @Transactional(readOnly = true)
+    public long countTree(String folderPath) {
+        return storageObjectRepository.countByPathPrefix(likePrefix(folderPath));
+    }
+
+    @Transactional(readOnly = true)
+    public List<StorageObject> listChildren(String folderPath) {
+        return storageObjectRepository.findAllByParentOrderByNameAsc(folderPath);
+    }
+
+    //Keyset-пагинация: следующая страница начинается сразу после последней записи предыдущей
+    @Transactional(readOnly = true)
+    public Window<StorageObject> listChildren(String folderPath, DirectorySort sort, Sort.Direction direction,
+                                              ScrollPosition position, int limit) {
+        Sort order = (sort == DirectorySort.NAME)
+                ? Sort.by(direction, sort.getProperty())
+                : Sort.by(direction, sort.getProperty(), DirectorySort.NAME.getProperty());
+        return storageObjectRepository.findByParent(folderPath, position, order, Limit.of(limit));
+    }
+
+    @Transactional(readOnly = true)
+    public List<StorageObject> search(String folderPath, String query, SearchMode mode, int limit) {
+        String escapedQuery = escapeLike(query.toLowerCase(Locale.ROOT));
+        String pattern = switch (mode) {
+            case SUBSTRING -> "%" + escapedQuery + "%";
+            case PREFIX -> escapedQuery + "%";
+            case EXTENSION -> escapedQuery.startsWith(".") ? "%" + escapedQuery : "%." + escapedQuery;
+        };
+        return storageObjectRepository.searchByName(folderPath.substring(0, folderPath.indexOf('/')),
+                likePrefix(folderPath), folderPath, pattern, limit);
+    }
+
+    public void recordFolder(String path, String etag) {
+        record(path, ResourceType.DIRECTORY, 0L, etag, Instant.now(), null);
+        invalidateParent(path);
+    }
+
+    //Все маркеры папок пишутся в одной транзакции
+    public void recordFolders(Map<String, String> etagsByPath) {
+        etagsByPath.forEach((path, etag) -> record(path, ResourceType.DIRECTORY, 0L, etag, Instant.now(), null));
+        etagsByPath.keySet().forEach(this::invalidateParent);
+    }
+
+    public void recordFile(String path, long size, String etag) {
+        recordFile(path, size, etag, null);
+    }
+
+    public void recordFile(String path, long size, String etag, String blobKey) {
+        record(path, ResourceType.FILE, size, etag, Instant.now(), blobKey);
+        invalidateParent(path);
+    }
+
+    //Обход поддерева по возрастанию пути страницами, без загрузки всех строк в память
+    public Iterator<StorageObject> iterateTree(String folderPath, int pageSize) {
+        return WindowIterator.of(position -> storageObjectRepository.findByPathStartingWith(folderPath, position,
+                        Sort.by("path"), Limit.of(pageSize)))
+                .startingAt(ScrollPosition.keyset());
+    }
+
+    public void remove(String path) {
+        storageObjectRepository.findByPath(path)
+                .filter(storageObject -> storageObject.getType() == ResourceType.FILE)
+                .ifPresent(storageObject -> {
+                    storageUsageService.addUsage(path, -storageObject.getSize(), -1);
+                    if (storageObject.getBlobKey() != null) {
+                        blobStore.release(storageObject.getBlobKey(), 1);
+                    }
+                });
+        storageObjectRepository.deleteByPath(path);
+        invalidateParent(path);
+    }
+
+    //Одна выборка и одно удаление на все пути; счетчики и ссылки на блобы меняются одной дельтой на пользователя и блоб
+    public void removeAll(Collection<String> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        List<StorageObject> removed = storageObjectRepository.findAllByPathIn(paths);
+        Map<String, long[]> usageByRoot = new HashMap<>();
+        Map<String, Long> blobReferences = new HashMap<>();
+        Map<String, Set<String>> parentsByRoot = new HashMap<>();
+        for (StorageObject storageObject : removed) {
+            String path = storageObject.getPath();
+            String root = path.substring(0, path.indexOf('/') + 1);
+            if (storageObject.getType() == ResourceType.FILE) {
+                long[] usage = usageByRoot.computeIfAbsent(root, key -> new long[2]);
+                usage[0] += storageObject.getSize();
+                usage[1]++;
+                if (storageObject.getBlobKey() != null) {
+                    blobReferences.merge(storageObject.getBlobKey(), 1L, Long::sum);
+                }
+            }
+            String parent = parentOf(path);
+            if (parent != null) {
+                parentsByRoot.computeIfAbsent(root, key -> new HashSet<>()).add(parent);
+            }
+        }
+        usageByRoot.forEach((root, usage) -> storageUsageService.addUsage(root, -usage[0], -usage[1]));
+        blobReferences.forEach(blobStore::release);
+        storageObjectRepository.deleteAllByPathIn(paths);
+        parentsByRoot.values().forEach(parents -> directoryListingCache.invalidate(parents.toArray(String[]::new)));
+    }
+
+    public void removeTree(String folderPath) {
+        subtractUsage(folderPath, storageObjectRepository.sumByPathPrefixAndType(likePrefix(folderPath), ResourceType.FILE));
+        releaseBlobs(storageObjectRepository.countBlobReferencesByPathPrefix(likePrefix(folderPath)));
+        storageObjectRepository.deleteAllByPathPrefix(likePrefix(folderPath));
+        invalidateTree(folderPath);
+    }
+
+    //Оставляет в индексе не удаленные объекты вместе с их родительскими папками
+    public void removeTree(String folderPath, Collection<String> retainedPaths) {
+        Set<String> retainedWithParents = new HashSet<>();
+        for (String retainedPath : retainedPaths) {
+            for (String path = retainedPath; path != null && path.startsWith(folderPath); path = parentOf(path)) {
+                retainedWithParents.add(path);
+            }
+        }
+        if (retainedWithParents.isEmpty()) {
+            removeTree(folderPath);
+            return;
+        }
+        String[] retained = retainedWithParents.toArray(String[]::new);
+        subtractUsage(folderPath, storageObjectRepository.sumByPathPrefixAndTypeAndPathNotIn(
+                likePrefix(folderPath), ResourceType.FILE.name(), retained));
+        releaseBlobs(storageObjectRepository.countBlobReferencesByPathPrefixAndPathNotIn(
+                likePrefix(folderPath), retained));
+        storageObjectRepository.deleteAllByPathPrefixAndPathNotIn(likePrefix(folderPath), retained);
+        invalidateTree(folderPath);
+    }
+
+    public void move(String pathFrom, String pathTo) {
+        StorageObject storageObject = storageObjectRepository.findByPath(pathFrom)
+                .orElseThrow(() -> new IllegalStateException("Object is missing in metadata index: " + pathFrom));
+        storageObject.setPath(pathTo);
+        storageObject.setParent(parentOf(pathTo));
+        storageObject.setName(nameOf(pathTo));
+        storageObject.setLastModified(Instant.now());
+        storageObjectRepository.save(storageObject);
+        invalidateParent(pathFrom);
+        invalidateParent(pathTo);
+    }
+
+    public void moveTree(String folderPathFrom, String folderPathTo) {
+        storageObjectRepository.moveAllByPathPrefix(likePrefix(folderPathFrom), folderPathFrom,
+                folderPathFrom.length() + 1, folderPathTo, parentOf(folderPathTo), nameOf(folderPathTo));
+        invalidateTree(folderPathFrom);
+        invalidateTree(folderPathTo);
+    }
+
+    public void copy(String pathFrom, String pathTo, String etag) {
+        StorageObject storageObject = storageObjectRepository.findByPath(pathFrom)
+                .orElseThrow(() -> new IllegalStateException("Object is missing in metadata index: " + pathFrom));
+        copyRecord(storageObject, pathTo, etag);
+        invalidateParent(pathTo);
+    }
+
+    //Копирует строки поддерева; файлы-ссылки на блоб получают еще одну ссылку, а не копию данных
+    public void copyTree(String folderPathFrom, String folderPathTo) {
+        Iterator<StorageObject> storageObjects = iterateTree(folderPathFrom, COPY_PAGE_SIZE);
+        while (storageObjects.hasNext()) {
+            StorageObject storageObject = storageObjects.next();
+            copyRecord(storageObject, folderPathTo + storageObject.getPath().substring(folderPathFrom.length()),
+                    storageObject.getEtag());
+        }
+        invalidateTree(folderPathTo);
+    }
+
+    /**
+     * Заполняет индекс из MinIO для пользователей, чьи файлы были загружены до появления индекса.
+     * Проверка выполняется один раз на корневую папку пользователя за время жизни приложения.
+     * Первые запросы одного пользователя индексируют по очереди, а строки вставляются через
+     * ON CONFLICT DO NOTHING, поэтому параллельная индексация на другом узле не падает на уникальности path.
+     * Индексация коммитится в собственной транзакции до того, как корень помечается проиндексированным
+     * и снимается блокировка: иначе следующий запрос увидел бы пустой индекс и ответил ложным 404.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void ensureIndexed(String backendPath) {
+        String userRootFolder = backendPath.substring(0, backendPath.indexOf('/') + 1);
+        if (indexedRoots.contains(userRootFolder)) {
+            return;
+        }
+        ReentrantLock lock = indexingLocks.computeIfAbsent(userRootFolder, ignored -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (indexedRoots.contains(userRootFolder)) {
+                return;
+            }
+            Boolean reindexed = indexingTransaction.execute(status -> {
+                if (storageObjectRepository.existsByPath(userRootFolder)) {
+                    return false;
+                }
+                reindex(userRootFolder);
+                return true;
+            });
+            if (Boolean.TRUE.equals(reindexed)) {
+                directoryListingCache.invalidateTree(userRootFolder);
+            }
+            indexedRoots.add(userRootFolder);
+        } finally {
+            lock.unlock();
+            indexingLocks.remove(userRootFolder, lock);
+        }
+    }
+
+    private void reindex(String userRootFolder) {
+        log.info("Building metadata index for {}", userRootFolder);
+        insertIfAbsent(userRootFolder, ResourceType.DIRECTORY, 0L, null, Instant.now());
+        long indexedBytes = 0;
+        long indexedFiles = 0;
+        Iterator<StorageBackend.StoredObject> objects =
+                storageBackend.listObjects(userRootFolder, FolderTraversalMode.RECURSIVE);
+        while (objects.hasNext()) {
+            StorageBackend.StoredObject object = objects.next();
+            if (userRootFolder.equals(object.key())) {
+                continue;
+            }
+            ResourceType type = object.key().endsWith("/") ? ResourceType.DIRECTORY : ResourceType.FILE;
+            Instant lastModified = object.lastModified() == null ? Instant.now() : object.lastModified();
+            //Учитываем только вставленные строки: остальные уже посчитал тот, кто их записал
+            if (insertIfAbsent(object.key(), type, object.size(), object.etag(), lastModified)
+                && type == ResourceType.FILE) {
+                indexedBytes += object.size();
+                indexedFiles++;
+            }
+        }
+        storageUsageService.addUsage(userRootFolder, indexedBytes, indexedFiles);
+    }
+
+    private boolean insertIfAbsent(String path, ResourceType type, long size, String etag, Instant lastModified) {
+        return storageObjectRepository.insertIfAbsent(path, parentOf(path), nameOf(path), type.name(), size,
+                etag == null ? null : etag.replace("\"", ""), lastModified) > 0;
+    }
+
+    private void record(String path, ResourceType type, long size, String etag, Instant lastModified,
+                        String blobKey) {
+        StorageObject storageObject = storageObjectRepository.findByPath(path).orElseGet(StorageObject::new);
+        if (storageObject.getBlobKey() != null) {
+            blobStore.release(storageObject.getBlobKey(), 1);
+        }
+        boolean replacesFile = storageObject.getId() != null && storageObject.getType() == ResourceType.FILE;
+        long bytesDelta = (type == ResourceType.FILE ? size : 0) - (replacesFile ? storageObject.getSize() : 0);
+        long objectsDelta = (type == ResourceType.FILE ? 1 : 0) - (replacesFile ? 1 : 0);
+        storageObject.setPath(path);
+        storageObject.setParent(parentOf(path));
+        storageObject.setName(nameOf(path));
+        storageObject.setType(type);
+        storageObject.setSize(size);
+        storageObject.setEtag(etag == null ? null : etag.replace("\"", ""));
+        storageObject.setLastModified(lastModified);
+        storageObject.setBlobKey(blobKey);
+        storageObjectRepository.save(storageObject);
+        storageUsageService.addUsage(path, bytesDelta, objectsDelta);
+    }
+
+    private void copyRecord(StorageObject source, String pathTo, String etag) {
+        if (source.getBlobKey() != null) {
+            blobStore.retain(source.getBlobKey());
+        }
+        record(pathTo, source.getType(), source.getSize(), etag, Instant.now(), source.getBlobKey());
+    }
+
+    private void releaseBlobs(List<BlobReferences> references) {
+        for (BlobReferences reference : references) {
+            blobStore.release(reference.getBlobKey(), reference.getReferences());
+        }
+    }
+
+    private void subtractUsage(String folderPath, StorageTotals removed) {
+        storageUsageService.addUsage(folderPath, -removed.getBytes(), -removed.getObjects());
+    }
+
+    private void invalidateParent(String path) {
+        String parent = parentOf(path);
+        if (parent != null) {
+            directoryListingCache.invalidate(parent);
+        }
+    }
+
+    //Папка исчезла или появилась целиком: сбрасываем ее родителя и все листинги внутри нее
+    private void invalidateTree(String folderPath) {
+        String parent = parentOf(folderPath);
+        if (parent == null) {
+            directoryListingCache.invalidateTree(folderPath);
+        } else {
+            directoryListingCache.invalidateTree(folderPath, parent);
+        }
+    }
+
+    private static boolean isUserRootFolder(String path) {
+        return path.indexOf('/') == path.length() - 1;
+    }
+
+    private static String parentOf(String path) {
+        return isUserRootFolder(path) ? null : PathUtils.removeFileOrFolderName(path);
+    }
+
+    private static String nameOf(String path) {
+        return isUserRootFolder(path) ? path : PathUtils.getFileOrFolderName(path);
+    }
+
+    private static String likePrefix(String path) {
+        return escapeLike(path) + '%';
+    }
+
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 1);
+        for (char c : value.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
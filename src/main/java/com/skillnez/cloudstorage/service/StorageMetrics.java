@@ -0,0 +1,272 @@
+package com.skillnez.cloudstorage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.Result;
+import io.minio.errors.ErrorResponseException;
+import io.minio.errors.MinioException;
+import io.minio.messages.Item;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Метрики обращений к хранилищу (MinIO или локальному диску) и объема переданных данных.
+ * На каждую операцию (put/get/stat/copy/remove/list/compose/move) заводятся таймер с перцентилями,
+ * счетчик ошибок и gauge с числом запросов в полете. Таймеры эндпоинтов дает http.server.requests.
+ */
+@Component
+public class StorageMetrics {
+
+    public static final String PUT = "put";
+    public static final String GET = "get";
+    public static final String STAT = "stat";
+    public static final String COPY = "copy";
+    public static final String REMOVE = "remove";
+    public static final String LIST = "list";
+    public static final String COMPOSE = "compose";
+    public static final String MOVE = "move";
+
+    private static final String REQUESTS_METRIC = "storage.minio.requests";
+    private static final String ERRORS_METRIC = "storage.minio.errors";
+    private static final String IN_FLIGHT_METRIC = "storage.minio.requests.in.flight";
+    private static final String TRANSFER_METRIC = "storage.transfer.bytes";
+    private static final String NO_SUCH_KEY = "NoSuchKey";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Counter uploadedBytes;
+    private final Counter downloadedBytes;
+    private final Counter zippedBytes;
+
+    @Autowired
+    public StorageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.uploadedBytes = transferCounter("upload");
+        this.downloadedBytes = transferCounter("download");
+        this.zippedBytes = transferCounter("zip");
+    }
+
+    @FunctionalInterface
+    public interface MinioCall<T> {
+        T call() throws IOException, GeneralSecurityException, MinioException;
+    }
+
+    public <T> T record(String operation, MinioCall<T> minioCall)
+            throws IOException, GeneralSecurityException, MinioException {
+        AtomicInteger active = inFlight(operation);
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return minioCall.call();
+        } catch (IOException | GeneralSecurityException | MinioException | RuntimeException e) {
+            recordError(operation, e);
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            timer(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    //Время считается до завершения future, а не до возврата из вызова
+    public <T> CompletableFuture<T> recordAsync(String operation, MinioCall<CompletableFuture<T>> asyncCall)
+            throws IOException, GeneralSecurityException, MinioException {
+        AtomicInteger active = inFlight(operation);
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = asyncCall.call();
+        } catch (IOException | GeneralSecurityException | MinioException | RuntimeException e) {
+            active.decrementAndGet();
+            recordError(operation, e);
+            throw e;
+        }
+        return future.whenComplete((result, e) -> {
+            active.decrementAndGet();
+            timer(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (e != null) {
+                recordError(operation, (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e);
+            }
+        });
+    }
+
+    //Для хранилищ без проверяемых исключений, например локального диска: таймер и счетчик ошибок те же
+    public <T> T recordUnchecked(String operation, Supplier<T> call) {
+        AtomicInteger active = inFlight(operation);
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            recordError(operation, e);
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            timer(operation).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Листинг ленивый: страницы запрашиваются при обходе. В таймер попадает суммарное время ожидания
+     * страниц за весь обход, оно записывается, когда листинг дочитан до конца.
+     */
+    public Iterable<Result<Item>> recordListing(Iterable<Result<Item>> listing) {
+        return () -> new TimedListing<>(listing.iterator()) {
+            //Ошибки страницы SDK отдает не исключением, а внутри Result
+            @Override
+            public Result<Item> next() {
+                Result<Item> result = super.next();
+                try {
+                    result.get();
+                } catch (IOException | GeneralSecurityException | MinioException | RuntimeException e) {
+                    recordError(LIST, e);
+                }
+                return result;
+            }
+        };
+    }
+
+    public <T> Iterator<T> recordListing(Iterator<T> listing) {
+        return new TimedListing<>(listing);
+    }
+
+    public void recordUpload(long bytes) {
+        uploadedBytes.increment(bytes);
+    }
+
+    //Отдача локального файла через sendfile, мимо потоков JVM
+    public void recordDownload(long bytes) {
+        downloadedBytes.increment(bytes);
+    }
+
+    public InputStream meterDownload(InputStream downloadStream) {
+        return new FilterInputStream(downloadStream) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    downloadedBytes.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    downloadedBytes.increment(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    public OutputStream meterZip(OutputStream archiveStream) {
+        return new FilterOutputStream(archiveStream) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                zippedBytes.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                zippedBytes.increment(len);
+            }
+        };
+    }
+
+    //Отсутствующий объект - обычный ответ на проверку существования, а не сбой хранилища
+    private void recordError(String operation, Throwable e) {
+        if (e instanceof ErrorResponseException errorResponse
+            && NO_SUCH_KEY.equals(errorResponse.errorResponse().code())) {
+            return;
+        }
+        meterRegistry.counter(ERRORS_METRIC, "operation", operation, "exception", e.getClass().getSimpleName())
+                .increment();
+    }
+
+    private class TimedListing<T> implements Iterator<T> {
+
+        private final Iterator<T> iterator;
+        private final AtomicInteger active = inFlight(LIST);
+        private long waitedNanos;
+        private boolean recorded;
+
+        private TimedListing(Iterator<T> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            active.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                boolean hasNext = iterator.hasNext();
+                waitedNanos += System.nanoTime() - start;
+                if (!hasNext && !recorded) {
+                    recorded = true;
+                    timer(LIST).record(waitedNanos, TimeUnit.NANOSECONDS);
+                }
+                return hasNext;
+            } catch (RuntimeException e) {
+                recordError(LIST, e);
+                throw e;
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+    }
+
+    private Timer timer(String operation) {
+        return timers.computeIfAbsent(operation, key -> Timer.builder(REQUESTS_METRIC)
+                .description("Storage request latency")
+                .tag("operation", key)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private AtomicInteger inFlight(String operation) {
+        return inFlight.computeIfAbsent(operation, key -> {
+            AtomicInteger active = new AtomicInteger();
+            Gauge.builder(IN_FLIGHT_METRIC, active, AtomicInteger::get)
+                    .description("Storage requests in flight")
+                    .tag("operation", key)
+                    .register(meterRegistry);
+            return active;
+        });
+    }
+
+    private Counter transferCounter(String direction) {
+        return Counter.builder(TRANSFER_METRIC)
+                .description("Bytes transferred between clients and storage")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+}
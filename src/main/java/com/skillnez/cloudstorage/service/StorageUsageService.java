@@ -0,0 +1,147 @@
+package com.skillnez.cloudstorage.service;
+
+import com.skillnez.cloudstorage.dto.StorageUsageResponseDto;
+import com.skillnez.cloudstorage.entity.UserStorageUsage;
+import com.skillnez.cloudstorage.exception.UploadLimitExceededException;
+import com.skillnez.cloudstorage.repository.UserStorageUsageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Счетчики занятого места и числа файлов пользователя. Обновляются в той же транзакции,
+ * что и индекс метаданных, поэтому всегда совпадают с ним без сканирования бакета.
+ */
+@Service
+@Transactional
+public class StorageUsageService {
+
+    private static final long RESERVATION_STEP = 8L * 1024 * 1024;
+    private final UserStorageUsageRepository userStorageUsageRepository;
+    //0 - без ограничения
+    @Value("${storage.quota.bytes:0}")
+    private long quotaBytes;
+
+    @Autowired
+    public StorageUsageService(UserStorageUsageRepository userStorageUsageRepository) {
+        this.userStorageUsageRepository = userStorageUsageRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public StorageUsageResponseDto getUsage(Long userId) {
+        UserStorageUsage usage = userStorageUsageRepository.findById(userId)
+                .orElseGet(() -> new UserStorageUsage(userId, 0L, 0L));
+        return new StorageUsageResponseDto(usage.getUsedBytes(), usage.getObjectCount(),
+                quotaBytes > 0 ? quotaBytes : null);
+    }
+
+    @Transactional(readOnly = true)
+    public void checkQuota(Long userId, long incomingBytes) {
+        if (quotaBytes <= 0 || incomingBytes <= 0) {
+            return;
+        }
+        long usedBytes = userStorageUsageRepository.findById(userId).map(UserStorageUsage::getUsedBytes).orElse(0L);
+        if (usedBytes + incomingBytes > quotaBytes) {
+            throw quotaExceeded(userId, incomingBytes);
+        }
+    }
+
+    /**
+     * Резервирует место под загрузку до записи файла в индекс. Пока резерв не закрыт, он входит в used_bytes,
+     * поэтому параллельные загрузки не могут вместе превысить квоту. Резерв можно добирать по мере чтения
+     * потока неизвестной длины через {@link Reservation#extendTo}.
+     *
+     * @throws UploadLimitExceededException если квота не позволяет зарезервировать {@code bytes}
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Reservation reserve(Long userId, long bytes) {
+        Reservation reservation = new Reservation(userId);
+        if (!reservation.extendTo(bytes)) {
+            throw quotaExceeded(userId, bytes);
+        }
+        return reservation;
+    }
+
+    /**
+     * Резерв на все время сессии загрузки по частям. В отличие от {@link Reservation} переживает запрос:
+     * размер резерва хранится в сессии и снимается через {@link #releaseReserved}.
+     *
+     * @return зарезервированные байты, 0 без квоты
+     * @throws UploadLimitExceededException если квота не позволяет зарезервировать {@code bytes}
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long reserveForSession(Long userId, long bytes) {
+        if (quotaBytes <= 0 || bytes <= 0) {
+            return 0;
+        }
+        if (userStorageUsageRepository.tryReserve(userId, bytes, quotaBytes) == 0) {
+            throw quotaExceeded(userId, bytes);
+        }
+        return bytes;
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void releaseReserved(Long userId, long bytes) {
+        if (bytes > 0) {
+            userStorageUsageRepository.release(userId, bytes);
+        }
+    }
+
+    public void addUsage(String backendPath, long bytes, long objects) {
+        if (bytes == 0 && objects == 0) {
+            return;
+        }
+        userStorageUsageRepository.addUsage(userIdOf(backendPath), bytes, objects);
+    }
+
+    public UploadLimitExceededException quotaExceeded(Long userId, long incomingBytes) {
+        long usedBytes = userStorageUsageRepository.findById(userId).map(UserStorageUsage::getUsedBytes).orElse(0L);
+        return new UploadLimitExceededException("Storage quota exceeded: " + usedBytes + " of " + quotaBytes
+                                                + " bytes used, upload needs " + incomingBytes);
+    }
+
+    public final class Reservation implements AutoCloseable {
+
+        private final Long userId;
+        private long reservedBytes;
+        private boolean nearQuota;
+
+        private Reservation(Long userId) {
+            this.userId = userId;
+        }
+
+        //Добирает резерв до totalBytes шагами по RESERVATION_STEP; у границы квоты, где шаг уже не помещается, - точно
+        public boolean extendTo(long totalBytes) {
+            if (quotaBytes <= 0 || totalBytes <= reservedBytes) {
+                return true;
+            }
+            long target = nearQuota ? totalBytes : Math.max(totalBytes, reservedBytes + RESERVATION_STEP);
+            if (userStorageUsageRepository.tryReserve(userId, target - reservedBytes, quotaBytes) > 0) {
+                reservedBytes = target;
+                return true;
+            }
+            if (target > totalBytes) {
+                nearQuota = true;
+                return extendTo(totalBytes);
+            }
+            return false;
+        }
+
+        //Файл к этому моменту уже учтен в индексе, резерв просто снимается
+        @Override
+        public void close() {
+            if (reservedBytes > 0) {
+                userStorageUsageRepository.release(userId, reservedBytes);
+                reservedBytes = 0;
+            }
+        }
+    }
+
+    //Корневая папка пользователя имеет вид user-{id}-files/
+    public static Long userIdOf(String backendPath) {
+        String userRootFolder = backendPath.substring(0, backendPath.indexOf('/'));
+        return Long.parseLong(userRootFolder.substring("user-".length(), userRootFolder.length() - "-files".length()));
+    }
+}
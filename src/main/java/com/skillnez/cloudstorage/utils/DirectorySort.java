@@ -0,0 +1,15 @@
+package com.skillnez.cloudstorage.utils;
+
+public enum DirectorySort {
+    NAME("name"), SIZE("size"), MODIFIED("lastModified");
+
+    private final String property;
+
+    DirectorySort(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+}
@@ -0,0 +1,49 @@
+package com.skillnez.cloudstorage.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongPredicate;
+
+//Прерывает чтение, как только allowance отказывает для числа уже прочитанных байт
+public class LimitedInputStream extends CountingInputStream {
+
+    private final LongPredicate allowance;
+    private boolean limitExceeded;
+
+    public LimitedInputStream(InputStream in, LongPredicate allowance) {
+        super(in);
+        this.allowance = allowance;
+    }
+
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        checkLimit();
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        checkLimit();
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        checkLimit();
+        return skipped;
+    }
+
+    private void checkLimit() throws IOException {
+        if (limitExceeded || !allowance.test(getCount())) {
+            limitExceeded = true;
+            throw new IOException("Read limit exceeded after " + getCount() + " bytes");
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.skillnez.cloudstorage.dto.ResourceType;
 import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
 import com.skillnez.cloudstorage.exception.BadPathFormatException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class PathUtils {
 
     public static String formatPathForBackend(String rawPath, Long userId) {
@@ -20,52 +23,60 @@ public class PathUtils {
         if (backendPath == null || backendPath.isEmpty()) {
             throw new BadPathFormatException("Invalid path");
         }
+        //Путь разбирается один раз: имя, корневая папка и родитель берутся по индексам из одной нормализованной строки
         String normalizedPath = normalizePath(backendPath);
-        normalizedPath = removeUserRootFolder(normalizedPath);
-        normalizedPath = removeFileOrFolderName(normalizedPath);
-        String name = getFileOrFolderName(backendPath);
-        if (name.equals(normalizedPath)) {
-            normalizedPath = "";
+        int nameIndex = nameStartIndex(normalizedPath);
+        if (nameIndex == 0) {
+            throw new BadPathFormatException("Filename can't be blank");
+        }
+        String name = normalizedPath.substring(nameIndex);
+        String parentPath = "";
+        int rootEnd = normalizedPath.indexOf('/') + 1;
+        if (rootEnd < nameIndex) {
+            parentPath = stripLeading(normalizedPath.substring(rootEnd, nameIndex));
+        }
+        if (name.equals(parentPath)) {
+            parentPath = "";
         }
         Long size = (name.endsWith("/")) ? null : fileSize;
         ResourceType resourceType = (name.endsWith("/")) ? ResourceType.DIRECTORY : ResourceType.FILE;
-        return new StorageInfoResponseDto(normalizedPath, name, size, resourceType);
+        return new StorageInfoResponseDto(parentPath, name, size, resourceType);
     }
 
     public static String removeFileOrFolderName(String backendPath) {
         String normalizedPath = normalizePath(backendPath);
-        int slashIndex;
-        if (normalizedPath.endsWith("/")) {
-            slashIndex = normalizedPath.lastIndexOf('/', normalizedPath.length() - 2);
-        } else {
-            slashIndex = normalizedPath.lastIndexOf('/');
-        }
-        return normalizedPath.substring(0, slashIndex + 1);
+        return normalizedPath.substring(0, nameStartIndex(normalizedPath));
     }
 
     public static String getFileOrFolderName(String backendPath) {
         String normalizedPath = normalizePath(backendPath);
-        int slashIndex;
-        if (normalizedPath.endsWith("/")) {
-            slashIndex = normalizedPath.lastIndexOf('/', normalizedPath.length() - 2);
-        } else {
-            slashIndex = normalizedPath.lastIndexOf('/');
-        }
-        if (slashIndex == -1) {
+        int nameIndex = nameStartIndex(normalizedPath);
+        if (nameIndex == 0) {
             throw new BadPathFormatException("Filename can't be blank");
         }
-        return normalizedPath.substring(slashIndex + 1);
+        return normalizedPath.substring(nameIndex);
     }
 
-    public static String normalizePath(String path) {
-        if (path.matches(".*[:*?\"<>|].*")) {
-            throw new BadPathFormatException("Path cannot contain ':  *  ?  \"  <  >  |'");
+    //Все папки-предки от корневой папки пользователя до непосредственного родителя, по порядку
+    public static List<String> getParentFolders(String backendPath) {
+        List<String> parentFolders = new ArrayList<>();
+        int slashIndex = backendPath.indexOf('/');
+        while (slashIndex != -1 && slashIndex < backendPath.length() - 1) {
+            parentFolders.add(backendPath.substring(0, slashIndex + 1));
+            slashIndex = backendPath.indexOf('/', slashIndex + 1);
         }
-        String cleaned = removeTrailingSlash(path);
-        if (cleaned.contains("..")) {
-            cleaned = cleaned.replaceAll("\\.{2,}", ".");
-        }
-        return cleaned;
+        return parentFolders;
+    }
+
+    //Пути задевают друг друга, если совпадают или один из них папка, внутри которой лежит другой
+    public static boolean overlaps(String path, String otherPath) {
+        return path.equals(otherPath)
+               || (path.endsWith("/") && otherPath.startsWith(path))
+               || (otherPath.endsWith("/") && path.startsWith(otherPath));
+    }
+
+    public static String normalizePath(String path) {
+        return removeTrailingSlash(path);
     }
 
     public static String getExtension(String pathFrom, String PathTo) {
@@ -96,19 +107,112 @@ public class PathUtils {
         throw new BadPathFormatException("Parent path must be a directory (ends with /)");
     }
 
-    private static String removeUserRootFolder(String backendPath) {
-        return backendPath.replaceFirst("^[^/]+/", "");
+    private static int nameStartIndex(String normalizedPath) {
+        int searchFrom = normalizedPath.endsWith("/") ? normalizedPath.length() - 2 : normalizedPath.length() - 1;
+        return normalizedPath.lastIndexOf('/', searchFrom) + 1;
+    }
+
+    //Повторяет повторную нормализацию родителя после отрезания корневой папки: trim, затем ведущие слеши
+    private static String stripLeading(String path) {
+        int start = 0;
+        while (start < path.length() && path.charAt(start) <= ' ') {
+            start++;
+        }
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        return path.substring(start);
     }
 
-    //Не знаю насколько минус, но в этом методе очень важен порядок обработки, что делает его очень неподатливым к изменениям
+    //Однопроходная замена цепочки trim/replaceAll. Результат совпадает со старой версией шаг в шаг:
+    //1) trim и '\\' -> '/'; 2) серии слешей схлопываются; 3) "/<пробелы>/" удаляется целиком;
+    //4) trim и ведущие слеши; 5) пробелы перед слешем удаляются; 6) серии точек схлопываются в одну.
+    //Шаги 1-3 выполняются при чтении входа, шаги 4-6 при записи в выходной буфер.
     private static String removeTrailingSlash(String rawPath) {
-        return rawPath.trim()
-                .replace("\\", "/")
-                .replaceAll("/{2,}", "/")
-                .replaceAll("/\\s+/", "")
-                .trim()
-                .replaceAll("^/+", "")
-                .replaceAll("\\s+/", "/");
+        int end = rawPath.length();
+        int start = 0;
+        while (start < end && rawPath.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && rawPath.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        char[] out = new char[end - start];
+        int length = 0;
+        int pendingWhitespace = -1;
+        boolean trimming = true;
+        boolean stripping = true;
+        int i = start;
+        while (i < end) {
+            char c = rawPath.charAt(i);
+            if (isSlash(c)) {
+                int afterSlashes = skipSlashes(rawPath, i, end);
+                int afterWhitespace = afterSlashes;
+                while (afterWhitespace < end && isWhitespace(rawPath.charAt(afterWhitespace))) {
+                    afterWhitespace++;
+                }
+                if (afterWhitespace > afterSlashes && afterWhitespace < end && isSlash(rawPath.charAt(afterWhitespace))) {
+                    i = skipSlashes(rawPath, afterWhitespace, end);
+                    continue;
+                }
+                i = afterSlashes;
+                c = '/';
+            } else {
+                if (isRestricted(c)) {
+                    throw new BadPathFormatException("Path cannot contain ':  *  ?  \"  <  >  |'");
+                }
+                i++;
+            }
+            if (trimming && c <= ' ') {
+                continue;
+            }
+            trimming = false;
+            if (stripping && c == '/') {
+                continue;
+            }
+            stripping = false;
+            if (c == '/') {
+                if (pendingWhitespace != -1) {
+                    length = pendingWhitespace;
+                }
+                pendingWhitespace = -1;
+            } else if (isWhitespace(c)) {
+                if (pendingWhitespace == -1) {
+                    pendingWhitespace = length;
+                }
+            } else {
+                pendingWhitespace = -1;
+                if (c == '.' && length > 0 && out[length - 1] == '.') {
+                    continue;
+                }
+            }
+            out[length++] = c;
+        }
+        while (length > 0 && out[length - 1] <= ' ') {
+            length--;
+        }
+        return new String(out, 0, length);
+    }
+
+    private static int skipSlashes(String path, int from, int end) {
+        int i = from;
+        while (i < end && isSlash(path.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isSlash(char c) {
+        return c == '/' || c == '\\';
+    }
+
+    //Тот же набор, что и \s в java.util.regex без UNICODE_CHARACTER_CLASS
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isRestricted(char c) {
+        return c == ':' || c == '*' || c == '?' || c == '"' || c == '<' || c == '>' || c == '|';
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,5 @@
+package com.skillnez.cloudstorage.utils;
+
+public enum SearchMode {
+    SUBSTRING, PREFIX, EXTENSION
+}
@@ -0,0 +1,122 @@
+package com.skillnez.cloudstorage;
+
+import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import com.skillnez.cloudstorage.security.CompactSessionSerializer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import java.time.Instant;
+import java.util.List;
+
+public class CompactSessionSerializerTest {
+
+    private final CompactSessionSerializer serializer = new CompactSessionSerializer(getClass().getClassLoader());
+
+    @Test
+    void securityContextShouldRoundTripInCompactForm() {
+        SecurityContext context = context(new CustomUserDetails(42L, "alice", null, true, true, false, true,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN"))));
+
+        byte[] bytes = serializer.serialize(context);
+        Assertions.assertEquals(1, bytes[0]);
+
+        SecurityContext restored = (SecurityContext) serializer.deserialize(bytes);
+        CustomUserDetails principal = (CustomUserDetails) restored.getAuthentication().getPrincipal();
+        Assertions.assertTrue(restored.getAuthentication().isAuthenticated());
+        Assertions.assertEquals(42L, principal.getId());
+        Assertions.assertEquals("alice", principal.getUsername());
+        Assertions.assertNull(principal.getPassword());
+        Assertions.assertTrue(principal.isEnabled());
+        Assertions.assertTrue(principal.isAccountNonExpired());
+        Assertions.assertFalse(principal.isCredentialsNonExpired());
+        Assertions.assertTrue(principal.isAccountNonLocked());
+        Assertions.assertEquals(List.of("ROLE_USER", "ROLE_ADMIN"), authorities(restored));
+    }
+
+    @Test
+    void sessionAttributesShouldUseTaggedForm() {
+        byte[] longBytes = serializer.serialize(1_700_000_000_000L);
+        byte[] intBytes = serializer.serialize(1800);
+        byte[] stringBytes = serializer.serialize("путь/к/файлу");
+
+        Assertions.assertEquals(2, longBytes[0]);
+        Assertions.assertEquals(9, longBytes.length);
+        Assertions.assertEquals(3, intBytes[0]);
+        Assertions.assertEquals(5, intBytes.length);
+        Assertions.assertEquals(4, stringBytes[0]);
+        Assertions.assertEquals(1_700_000_000_000L, serializer.deserialize(longBytes));
+        Assertions.assertEquals(1800, serializer.deserialize(intBytes));
+        Assertions.assertEquals("путь/к/файлу", serializer.deserialize(stringBytes));
+    }
+
+    @Test
+    void stringsTooLongForWriteUtfShouldFallBackToJdkSerialization() {
+        String ascii = "a".repeat(70_000);
+        //33 000 символов помещаются в лимит по числу символов, но не по длине в UTF-8
+        String cyrillic = "ж".repeat(33_000);
+        String atLimit = "a".repeat(65_535);
+
+        byte[] asciiBytes = serializer.serialize(ascii);
+        byte[] cyrillicBytes = serializer.serialize(cyrillic);
+        byte[] atLimitBytes = serializer.serialize(atLimit);
+
+        Assertions.assertEquals((byte) 0xAC, asciiBytes[0]);
+        Assertions.assertEquals((byte) 0xAC, cyrillicBytes[0]);
+        Assertions.assertEquals(4, atLimitBytes[0]);
+        Assertions.assertEquals(ascii, serializer.deserialize(asciiBytes));
+        Assertions.assertEquals(cyrillic, serializer.deserialize(cyrillicBytes));
+        Assertions.assertEquals(atLimit, serializer.deserialize(atLimitBytes));
+    }
+
+    @Test
+    void otherValuesShouldFallBackToJdkSerialization() {
+        Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+        //Контекст с паролем не подходит под компактный формат и должен сохраниться целиком
+        SecurityContext withPassword = context(new CustomUserDetails(7L, "bob", "secret", true, true, true, true,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        byte[] instantBytes = serializer.serialize(instant);
+        byte[] contextBytes = serializer.serialize(withPassword);
+
+        Assertions.assertEquals((byte) 0xAC, instantBytes[0]);
+        Assertions.assertEquals((byte) 0xAC, contextBytes[0]);
+        Assertions.assertEquals(instant, serializer.deserialize(instantBytes));
+        SecurityContext restored = (SecurityContext) serializer.deserialize(contextBytes);
+        Assertions.assertEquals("secret", ((CustomUserDetails) restored.getAuthentication().getPrincipal()).getPassword());
+    }
+
+    @Test
+    void legacyJdkPayloadsShouldStillDeserialize() {
+        JdkSerializationRedisSerializer legacy = new JdkSerializationRedisSerializer(getClass().getClassLoader());
+        SecurityContext context = context(new CustomUserDetails(42L, "alice", null, true, true, true, true,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+        SecurityContext restored = (SecurityContext) serializer.deserialize(legacy.serialize(context));
+        Assertions.assertEquals(42L, ((CustomUserDetails) restored.getAuthentication().getPrincipal()).getId());
+        Assertions.assertEquals(List.of("ROLE_USER"), authorities(restored));
+        Assertions.assertEquals(1_700_000_000_000L, serializer.deserialize(legacy.serialize(1_700_000_000_000L)));
+        Assertions.assertEquals("legacy", serializer.deserialize(legacy.serialize("legacy")));
+    }
+
+    @Test
+    void emptyPayloadShouldBeNull() {
+        Assertions.assertEquals(0, serializer.serialize(null).length);
+        Assertions.assertNull(serializer.deserialize(new byte[0]));
+        Assertions.assertNull(serializer.deserialize(null));
+    }
+
+    private static SecurityContext context(CustomUserDetails principal) {
+        List<GrantedAuthority> authorities = List.copyOf(principal.getAuthorities());
+        return new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(principal, null, authorities));
+    }
+
+    private static List<String> authorities(SecurityContext context) {
+        return context.getAuthentication().getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+    }
+}
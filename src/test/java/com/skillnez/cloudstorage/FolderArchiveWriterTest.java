@@ -0,0 +1,118 @@
+package com.skillnez.cloudstorage;
+
+import com.skillnez.cloudstorage.service.FolderArchiveWriter;
+import com.skillnez.cloudstorage.service.FolderArchiveWriter.ArchiveEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public class FolderArchiveWriterTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldKeepListingOrderAndContent() throws IOException {
+        Map<String, byte[]> objects = new LinkedHashMap<>();
+        objects.put("user-1-files/docs/", new byte[0]);
+        objects.put("user-1-files/docs/a.txt", "first".getBytes(StandardCharsets.UTF_8));
+        objects.put("user-1-files/docs/big.bin", new byte[64]);
+        objects.put("user-1-files/docs/b.txt", "second".getBytes(StandardCharsets.UTF_8));
+        objects.put("user-1-files/docs/c.txt", "third".getBytes(StandardCharsets.UTF_8));
+
+        FolderArchiveWriter writer = new FolderArchiveWriter(executor, 1024);
+        ReflectionTestUtils.setField(writer, "prefetchDepth", 2);
+        ReflectionTestUtils.setField(writer, "maxBufferedBytes", 16L);
+
+        List<ArchiveEntry> entries = objects.entrySet().stream()
+                .map(object -> new ArchiveEntry(object.getKey(),
+                        object.getKey().substring("user-1-files/".length()), object.getValue().length))
+                .toList();
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writer.write(entries.iterator(), objectName -> new ByteArrayInputStream(objects.get(objectName)), archive);
+
+        Map<String, byte[]> unpacked = new LinkedHashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                unpacked.put(zipEntry.getName(), zipInputStream.readAllBytes());
+            }
+        }
+        Assertions.assertEquals(List.of("docs/", "docs/a.txt", "docs/big.bin", "docs/b.txt", "docs/c.txt"),
+                List.copyOf(unpacked.keySet()));
+        for (ArchiveEntry entry : entries) {
+            Assertions.assertArrayEquals(objects.get(entry.objectName()), unpacked.get(entry.entryName()));
+        }
+    }
+
+    @Test
+    void shouldStreamDirectlyWhenSharedBudgetIsExhausted() throws IOException {
+        Map<String, byte[]> objects = new LinkedHashMap<>();
+        objects.put("user-1-files/docs/a.txt", "first".getBytes(StandardCharsets.UTF_8));
+        objects.put("user-1-files/docs/b.txt", "second".getBytes(StandardCharsets.UTF_8));
+
+        FolderArchiveWriter writer = new FolderArchiveWriter(executor, 0);
+        ReflectionTestUtils.setField(writer, "prefetchDepth", 2);
+        ReflectionTestUtils.setField(writer, "maxBufferedBytes", 16L);
+
+        List<ArchiveEntry> entries = objects.entrySet().stream()
+                .map(object -> new ArchiveEntry(object.getKey(),
+                        object.getKey().substring("user-1-files/".length()), object.getValue().length))
+                .toList();
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writer.write(entries.iterator(), objectName -> new ByteArrayInputStream(objects.get(objectName)), archive);
+
+        Map<String, byte[]> unpacked = new LinkedHashMap<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                unpacked.put(zipEntry.getName(), zipInputStream.readAllBytes());
+            }
+        }
+        Assertions.assertArrayEquals(objects.get("user-1-files/docs/a.txt"), unpacked.get("docs/a.txt"));
+        Assertions.assertArrayEquals(objects.get("user-1-files/docs/b.txt"), unpacked.get("docs/b.txt"));
+    }
+
+    @Test
+    void shouldReturnSharedBudgetWhenObjectFails() {
+        FolderArchiveWriter writer = new FolderArchiveWriter(executor, 1024);
+        ReflectionTestUtils.setField(writer, "prefetchDepth", 4);
+        ReflectionTestUtils.setField(writer, "maxBufferedBytes", 512L);
+
+        List<ArchiveEntry> entries = List.of(
+                new ArchiveEntry("user-1-files/docs/a.txt", "docs/a.txt", 100),
+                new ArchiveEntry("user-1-files/docs/broken.txt", "docs/broken.txt", 100),
+                new ArchiveEntry("user-1-files/docs/c.txt", "docs/c.txt", 100));
+        Assertions.assertThrows(RuntimeException.class, () -> writer.write(entries.iterator(), objectName -> {
+            if (objectName.endsWith("broken.txt")) {
+                throw new UncheckedIOException(new IOException("storage is down"));
+            }
+            return new ByteArrayInputStream(new byte[100]);
+        }, new ByteArrayOutputStream()));
+
+        Semaphore bufferBudget = (Semaphore) ReflectionTestUtils.getField(writer, "bufferBudget");
+        executor.shutdown();
+        Assertions.assertDoesNotThrow(() -> executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1024, bufferBudget.availablePermits());
+    }
+}
@@ -0,0 +1,36 @@
+package com.skillnez.cloudstorage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistrar;
+
+import java.io.IOException;
+import java.time.Duration;
+
+//Направляет MinIO-клиенты приложения на InMemoryS3Server; задержка задается s3-stand-in.latency и latency-jitter
+@TestConfiguration(proxyBeanMethods = false)
+class InMemoryS3Configuration {
+
+    static final String BUCKET_NAME = "user-files";
+
+    @Bean(destroyMethod = "close")
+    InMemoryS3Server inMemoryS3Server(@Value("${s3-stand-in.latency:PT0S}") Duration latency,
+                                      @Value("${s3-stand-in.latency-jitter:PT0S}") Duration latencyJitter)
+            throws IOException {
+        return InMemoryS3Server.start(latency, latencyJitter);
+    }
+
+    @Bean
+    DynamicPropertyRegistrar inMemoryS3Properties(InMemoryS3Server inMemoryS3Server) {
+        return registry -> {
+            registry.add("storage.backend", () -> "minio");
+            registry.add("minio.url", inMemoryS3Server::getUrl);
+            registry.add("minio.presigned.endpoint", inMemoryS3Server::getUrl);
+            registry.add("minio.access-key", () -> "test-access-key");
+            registry.add("minio.secret-key", () -> "test-secret-key");
+            registry.add("minio.bucket-name", () -> BUCKET_NAME);
+        };
+    }
+
+}
@@ -0,0 +1,532 @@
+package com.skillnez.cloudstorage;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * S3-совместимый сервер в памяти для тестов: реализует ровно те запросы, которые шлет MinIO-клиент приложения
+ * (бакеты, put/get/head/copy/delete, multipart и upload part copy для composeObject, пакетное удаление, ListObjectsV2).
+ * Подписи не проверяются. Перед каждым запросом выдерживается задержка {@code latency + random(0, jitter)},
+ * чтобы нагрузочный прогон видел сетевое хранилище, а не мгновенный ответ.
+ */
+@Slf4j
+public class InMemoryS3Server implements AutoCloseable {
+
+    private static final String S3_NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter XML_DATE =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US).withZone(ZoneOffset.UTC);
+    private static final Pattern XML_KEY = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+    private static final Pattern XML_PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final int DEFAULT_MAX_KEYS = 1000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Duration latency;
+    private final Duration latencyJitter;
+    private final Map<String, NavigableMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+
+    private record StoredObject(byte[] content, String etag, String contentType, Instant lastModified) {
+    }
+
+    private record MultipartUpload(String bucket, String key, String contentType,
+                                   Map<Integer, StoredObject> parts) {
+    }
+
+    private static final class S3Exception extends RuntimeException {
+
+        private final int status;
+        private final String code;
+
+        private S3Exception(int status, String code, String message) {
+            super(message);
+            this.status = status;
+            this.code = code;
+        }
+    }
+
+    private InMemoryS3Server(Duration latency, Duration latencyJitter) throws IOException {
+        this.latency = latency;
+        this.latencyJitter = latencyJitter;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        //Каждый запрос на своем виртуальном потоке: задержки не упираются в размер пула
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public static InMemoryS3Server start(Duration latency, Duration latencyJitter) throws IOException {
+        InMemoryS3Server s3Server = new InMemoryS3Server(latency, latencyJitter);
+        s3Server.server.start();
+        log.info("In-memory S3 started at {} with latency {} + up to {}", s3Server.getUrl(), latency, latencyJitter);
+        return s3Server;
+    }
+
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    //Число обработанных запросов по операциям S3, для отчета нагрузочного прогона
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        requestCounts.forEach((operation, count) -> counts.put(operation, count.sum()));
+        return counts;
+    }
+
+    public int getObjectCount(String bucket) {
+        NavigableMap<String, StoredObject> objects = buckets.get(bucket);
+        return objects == null ? 0 : objects.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            injectLatency();
+            String path = exchange.getRequestURI().getPath();
+            int slash = path.indexOf('/', 1);
+            String bucket = (slash < 0) ? path.substring(1) : path.substring(1, slash);
+            String key = (slash < 0) ? "" : path.substring(slash + 1);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            try {
+                if (key.isEmpty()) {
+                    handleBucket(exchange, bucket, query);
+                } else {
+                    handleObject(exchange, bucket, key, query);
+                }
+            } catch (S3Exception e) {
+                sendError(exchange, e.status, e.code, e.getMessage(), path);
+            } catch (RuntimeException e) {
+                log.error("In-memory S3 request {} {} failed", exchange.getRequestMethod(), path, e);
+                sendError(exchange, 500, "InternalError", String.valueOf(e.getMessage()), path);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void injectLatency() throws InterruptedException {
+        long delayNanos = latency.toNanos();
+        if (!latencyJitter.isZero()) {
+            delayNanos += ThreadLocalRandom.current().nextLong(latencyJitter.toNanos() + 1);
+        }
+        if (delayNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        }
+    }
+
+    private void handleBucket(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        String method = exchange.getRequestMethod();
+        if ("GET".equals(method) && query.containsKey("location")) {
+            count("getBucketLocation");
+            sendXml(exchange, 200, "<LocationConstraint xmlns=\"" + S3_NAMESPACE + "\"></LocationConstraint>");
+        } else if ("HEAD".equals(method)) {
+            count("headBucket");
+            exchange.sendResponseHeaders(buckets.containsKey(bucket) ? 200 : 404, -1);
+        } else if ("PUT".equals(method)) {
+            count("createBucket");
+            exchange.getRequestBody().readAllBytes();
+            buckets.putIfAbsent(bucket, new ConcurrentSkipListMap<>());
+            exchange.sendResponseHeaders(200, -1);
+        } else if ("GET".equals(method) && "2".equals(query.get("list-type"))) {
+            count("listObjects");
+            listObjects(exchange, bucket, query);
+        } else if ("POST".equals(method) && query.containsKey("delete")) {
+            count("deleteObjects");
+            deleteObjects(exchange, bucket);
+        } else {
+            throw new S3Exception(501, "NotImplemented", method + " on bucket is not supported");
+        }
+    }
+
+    private void handleObject(HttpExchange exchange, String bucket, String key, Map<String, String> query)
+            throws IOException {
+        String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+        switch (exchange.getRequestMethod()) {
+            case "PUT" -> {
+                if (query.containsKey("uploadId")) {
+                    uploadPart(exchange, query.get("uploadId"), Integer.parseInt(query.get("partNumber")), copySource);
+                } else if (copySource != null) {
+                    count("copyObject");
+                    StoredObject source = readCopySource(copySource, null);
+                    String contentType = "REPLACE".equals(exchange.getRequestHeaders().getFirst("x-amz-metadata-directive"))
+                            ? contentType(exchange.getRequestHeaders()) : source.contentType();
+                    StoredObject copy = store(bucket, key, source.content(), contentType);
+                    sendXml(exchange, 200, "<CopyObjectResult><LastModified>" + XML_DATE.format(copy.lastModified())
+                            + "</LastModified><ETag>\"" + copy.etag() + "\"</ETag></CopyObjectResult>");
+                } else {
+                    count("putObject");
+                    StoredObject object = store(bucket, key, exchange.getRequestBody().readAllBytes(),
+                            contentType(exchange.getRequestHeaders()));
+                    exchange.getResponseHeaders().set("ETag", "\"" + object.etag() + "\"");
+                    exchange.sendResponseHeaders(200, -1);
+                }
+            }
+            case "POST" -> {
+                if (query.containsKey("uploads")) {
+                    count("createMultipartUpload");
+                    requireBucket(bucket);
+                    String uploadId = UUID.randomUUID().toString();
+                    uploads.put(uploadId, new MultipartUpload(bucket, key, contentType(exchange.getRequestHeaders()),
+                            new ConcurrentHashMap<>()));
+                    sendXml(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"" + S3_NAMESPACE + "\"><Bucket>"
+                            + escape(bucket) + "</Bucket><Key>" + escape(key) + "</Key><UploadId>" + uploadId
+                            + "</UploadId></InitiateMultipartUploadResult>");
+                } else if (query.containsKey("uploadId")) {
+                    count("completeMultipartUpload");
+                    completeMultipartUpload(exchange, bucket, key, query.get("uploadId"));
+                } else {
+                    throw new S3Exception(501, "NotImplemented", "POST on object is not supported");
+                }
+            }
+            case "GET" -> {
+                count("getObject");
+                getObject(exchange, find(bucket, key));
+            }
+            case "HEAD" -> {
+                count("statObject");
+                StoredObject object = find(bucket, key);
+                setObjectHeaders(exchange.getResponseHeaders(), object);
+                exchange.getResponseHeaders().set("Content-Length", Long.toString(object.content().length));
+                exchange.sendResponseHeaders(200, -1);
+            }
+            case "DELETE" -> {
+                if (query.containsKey("uploadId")) {
+                    count("abortMultipartUpload");
+                    uploads.remove(query.get("uploadId"));
+                } else {
+                    count("removeObject");
+                    requireBucket(bucket).remove(key);
+                }
+                exchange.sendResponseHeaders(204, -1);
+            }
+            default -> throw new S3Exception(501, "NotImplemented", exchange.getRequestMethod() + " is not supported");
+        }
+    }
+
+    private void getObject(HttpExchange exchange, StoredObject object) throws IOException {
+        byte[] content = object.content();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        setObjectHeaders(exchange.getResponseHeaders(), object);
+        if (range == null) {
+            sendBody(exchange, 200, content);
+            return;
+        }
+        long[] bounds = parseRange(range, content.length);
+        int start = (int) bounds[0];
+        int end = (int) bounds[1];
+        exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        byte[] slice = new byte[end - start + 1];
+        System.arraycopy(content, start, slice, 0, slice.length);
+        sendBody(exchange, 206, slice);
+    }
+
+    private void uploadPart(HttpExchange exchange, String uploadId, int partNumber, String copySource)
+            throws IOException {
+        MultipartUpload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw new S3Exception(404, "NoSuchUpload", "Upload " + uploadId + " does not exist");
+        }
+        if (copySource == null) {
+            count("uploadPart");
+            StoredObject part = newObject(exchange.getRequestBody().readAllBytes(), upload.contentType());
+            upload.parts().put(partNumber, part);
+            exchange.getResponseHeaders().set("ETag", "\"" + part.etag() + "\"");
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        count("uploadPartCopy");
+        StoredObject source = readCopySource(copySource, exchange.getRequestHeaders().getFirst("x-amz-copy-source-range"));
+        StoredObject part = newObject(source.content(), upload.contentType());
+        upload.parts().put(partNumber, part);
+        sendXml(exchange, 200, "<CopyPartResult><LastModified>" + XML_DATE.format(part.lastModified())
+                + "</LastModified><ETag>\"" + part.etag() + "\"</ETag></CopyPartResult>");
+    }
+
+    //Итоговый etag как у S3: md5 от склеенных md5 частей и число частей через дефис
+    private void completeMultipartUpload(HttpExchange exchange, String bucket, String key, String uploadId)
+            throws IOException {
+        MultipartUpload upload = uploads.remove(uploadId);
+        if (upload == null) {
+            throw new S3Exception(404, "NoSuchUpload", "Upload " + uploadId + " does not exist");
+        }
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        List<Integer> partNumbers = new ArrayList<>();
+        Matcher matcher = XML_PART_NUMBER.matcher(body);
+        while (matcher.find()) {
+            partNumbers.add(Integer.parseInt(matcher.group(1)));
+        }
+        if (partNumbers.isEmpty()) {
+            partNumbers.addAll(new TreeMap<>(upload.parts()).keySet());
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteArrayOutputStream partDigests = new ByteArrayOutputStream();
+        for (int partNumber : partNumbers) {
+            StoredObject part = upload.parts().get(partNumber);
+            if (part == null) {
+                throw new S3Exception(400, "InvalidPart", "Part " + partNumber + " was not uploaded");
+            }
+            content.writeBytes(part.content());
+            partDigests.writeBytes(HexFormat.of().parseHex(part.etag()));
+        }
+        String etag = HexFormat.of().formatHex(md5(partDigests.toByteArray())) + "-" + partNumbers.size();
+        StoredObject object = new StoredObject(content.toByteArray(), etag, upload.contentType(), Instant.now());
+        requireBucket(bucket).put(key, object);
+        sendXml(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"" + S3_NAMESPACE + "\"><Location>"
+                + escape(getUrl() + "/" + bucket + "/" + key) + "</Location><Bucket>" + escape(bucket)
+                + "</Bucket><Key>" + escape(key) + "</Key><ETag>\"" + etag + "\"</ETag></CompleteMultipartUploadResult>");
+    }
+
+    private void deleteObjects(HttpExchange exchange, String bucket) throws IOException {
+        NavigableMap<String, StoredObject> objects = requireBucket(bucket);
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        Matcher matcher = XML_KEY.matcher(body);
+        while (matcher.find()) {
+            objects.remove(unescape(matcher.group(1)));
+        }
+        //Клиент шлет Quiet=true: в ответе только ошибки, а их здесь не бывает
+        sendXml(exchange, 200, "<DeleteResult xmlns=\"" + S3_NAMESPACE + "\"></DeleteResult>");
+    }
+
+    /**
+     * ListObjectsV2 поверх отсортированной карты ключей. С разделителем вложенные ключи сворачиваются
+     * в CommonPrefixes; токен продолжения - последний отданный ключ или префикс.
+     */
+    private void listObjects(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        NavigableMap<String, StoredObject> objects = requireBucket(bucket);
+        String prefix = query.getOrDefault("prefix", "");
+        String delimiter = query.getOrDefault("delimiter", "");
+        int maxKeys = query.containsKey("max-keys") ? Integer.parseInt(query.get("max-keys")) : DEFAULT_MAX_KEYS;
+        String after = query.getOrDefault("continuation-token", query.getOrDefault("start-after", ""));
+        boolean skipAfterPrefix = !delimiter.isEmpty() && after.length() > prefix.length() && after.endsWith(delimiter);
+
+        StringBuilder contents = new StringBuilder();
+        String lastReturned = null;
+        int keyCount = 0;
+        boolean truncated = false;
+        //Символ \uffff после префикса пропускает все ключи под ним одним переходом по карте
+        Map.Entry<String, StoredObject> entry = (after.compareTo(prefix) < 0)
+                ? objects.ceilingEntry(prefix)
+                : objects.higherEntry(skipAfterPrefix ? after + Character.MAX_VALUE : after);
+        while (entry != null && entry.getKey().startsWith(prefix)) {
+            if (keyCount == maxKeys) {
+                truncated = true;
+                break;
+            }
+            String key = entry.getKey();
+            int delimiterIndex = delimiter.isEmpty() ? -1 : key.indexOf(delimiter, prefix.length());
+            if (delimiterIndex >= 0) {
+                String commonPrefix = key.substring(0, delimiterIndex + delimiter.length());
+                contents.append("<CommonPrefixes><Prefix>").append(escape(commonPrefix)).append("</Prefix></CommonPrefixes>");
+                lastReturned = commonPrefix;
+                entry = objects.higherEntry(commonPrefix + Character.MAX_VALUE);
+            } else {
+                StoredObject object = entry.getValue();
+                contents.append("<Contents><Key>").append(escape(key)).append("</Key><LastModified>")
+                        .append(XML_DATE.format(object.lastModified())).append("</LastModified><ETag>\"")
+                        .append(object.etag()).append("\"</ETag><Size>").append(object.content().length)
+                        .append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+                lastReturned = key;
+                entry = objects.higherEntry(key);
+            }
+            keyCount++;
+        }
+
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"").append(S3_NAMESPACE).append("\">")
+                .append("<Name>").append(escape(bucket)).append("</Name>")
+                .append("<Prefix>").append(escape(prefix)).append("</Prefix>")
+                .append("<KeyCount>").append(keyCount).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>");
+        if (!delimiter.isEmpty()) {
+            xml.append("<Delimiter>").append(escape(delimiter)).append("</Delimiter>");
+        }
+        xml.append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(escape(lastReturned)).append("</NextContinuationToken>");
+        }
+        xml.append(contents).append("</ListBucketResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    //x-amz-copy-source: /bucket/key в URL-кодировке, диапазон - bytes=start-end включительно
+    private StoredObject readCopySource(String copySource, String copySourceRange) {
+        String source = percentDecode(copySource.startsWith("/") ? copySource.substring(1) : copySource);
+        int versionIndex = source.indexOf("?versionId=");
+        if (versionIndex >= 0) {
+            source = source.substring(0, versionIndex);
+        }
+        int slash = source.indexOf('/');
+        StoredObject object = find(source.substring(0, slash), source.substring(slash + 1));
+        if (copySourceRange == null) {
+            return object;
+        }
+        long[] bounds = parseRange(copySourceRange, object.content().length);
+        byte[] slice = new byte[(int) (bounds[1] - bounds[0] + 1)];
+        System.arraycopy(object.content(), (int) bounds[0], slice, 0, slice.length);
+        return new StoredObject(slice, object.etag(), object.contentType(), object.lastModified());
+    }
+
+    private StoredObject store(String bucket, String key, byte[] content, String contentType) {
+        StoredObject object = newObject(content, contentType);
+        requireBucket(bucket).put(key, object);
+        return object;
+    }
+
+    private StoredObject find(String bucket, String key) {
+        StoredObject object = requireBucket(bucket).get(key);
+        if (object == null) {
+            throw new S3Exception(404, "NoSuchKey", "The specified key does not exist.");
+        }
+        return object;
+    }
+
+    private NavigableMap<String, StoredObject> requireBucket(String bucket) {
+        NavigableMap<String, StoredObject> objects = buckets.get(bucket);
+        if (objects == null) {
+            throw new S3Exception(404, "NoSuchBucket", "The specified bucket does not exist");
+        }
+        return objects;
+    }
+
+    private void count(String operation) {
+        requestCounts.computeIfAbsent(operation, ignored -> new LongAdder()).increment();
+    }
+
+    private static StoredObject newObject(byte[] content, String contentType) {
+        return new StoredObject(content, HexFormat.of().formatHex(md5(content)), contentType, Instant.now());
+    }
+
+    private static long[] parseRange(String range, long size) {
+        Matcher matcher = RANGE.matcher(range);
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            throw new S3Exception(416, "InvalidRange", "The requested range is not satisfiable");
+        }
+        long start;
+        long end;
+        if (matcher.group(1).isEmpty()) {
+            start = Math.max(0, size - Long.parseLong(matcher.group(2)));
+            end = size - 1;
+        } else {
+            start = Long.parseLong(matcher.group(1));
+            end = matcher.group(2).isEmpty() ? size - 1 : Math.min(Long.parseLong(matcher.group(2)), size - 1);
+        }
+        if (start >= size || start > end) {
+            throw new S3Exception(416, "InvalidRange", "The requested range is not satisfiable");
+        }
+        return new long[]{start, end};
+    }
+
+    private static void setObjectHeaders(Headers headers, StoredObject object) {
+        headers.set("ETag", "\"" + object.etag() + "\"");
+        headers.set("Last-Modified", HTTP_DATE.format(object.lastModified()));
+        headers.set("Content-Type", object.contentType());
+        headers.set("Accept-Ranges", "bytes");
+    }
+
+    private static String contentType(Headers headers) {
+        String contentType = headers.getFirst("Content-Type");
+        return contentType == null ? "application/octet-stream" : contentType;
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        sendBody(exchange, status, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + xml).getBytes(StandardCharsets.UTF_8));
+    }
+
+    //Длина 0 в sendResponseHeaders означает chunked, пустое тело передается как -1
+    private static void sendBody(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    //На HEAD тело не отправляется, клиент определяет ошибку по статусу
+    private static void sendError(HttpExchange exchange, int status, String code, String message, String resource)
+            throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        sendXml(exchange, status, "<Error><Code>" + code + "</Code><Message>" + escape(message)
+                + "</Message><Resource>" + escape(resource) + "</Resource><RequestId>"
+                + UUID.randomUUID() + "</RequestId><HostId></HostId></Error>");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = percentDecode(equals < 0 ? parameter : parameter.substring(0, equals));
+            query.put(name, equals < 0 ? "" : percentDecode(parameter.substring(equals + 1)));
+        }
+        return query;
+    }
+
+    //S3 кодирует пробел как %20, а "+" в значениях остается буквальным
+    private static String percentDecode(String value) {
+        return URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+                .replace("\"", "&quot;").replace("'", "&apos;");
+    }
+
+    private static String unescape(String value) {
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static byte[] md5(byte[] content) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
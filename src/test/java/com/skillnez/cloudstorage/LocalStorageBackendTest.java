@@ -0,0 +1,154 @@
+package com.skillnez.cloudstorage;
+
+import com.skillnez.cloudstorage.exception.MinioOperationException;
+import com.skillnez.cloudstorage.service.LocalStorageBackend;
+import com.skillnez.cloudstorage.service.StorageBackend.StoredObject;
+import com.skillnez.cloudstorage.service.StorageMetrics;
+import com.skillnez.cloudstorage.utils.FolderTraversalMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class LocalStorageBackendTest {
+
+    @TempDir
+    Path root;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LocalStorageBackend backend;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        backend = new LocalStorageBackend(root, Runnable::run, new StorageMetrics(meterRegistry));
+    }
+
+    @Test
+    void keysOutsideOfRootShouldBeRejected() {
+        for (String key : List.of("../escape.txt", "user-1-files/../../escape.txt", "/etc/passwd", "",
+                ".tmp/object.bin", "user-1-files/../.tmp/object.bin")) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> put(key, "x"), key);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> backend.statObject(key), key);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> backend.getObject(key), key);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> backend.removeObject(key), key);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> backend.moveObject("user-1-files/a.txt", "../a.txt"));
+        Assertions.assertFalse(Files.exists(root.resolveSibling("escape.txt")));
+    }
+
+    @Test
+    void failedWriteShouldNotReplacePublishedObject() throws IOException {
+        put("user-1-files/docs/a.txt", "original");
+
+        InputStream failing = new InputStream() {
+            private int remaining = 4;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- > 0) {
+                    return 'x';
+                }
+                throw new IOException("Connection reset");
+            }
+        };
+        Assertions.assertThrows(MinioOperationException.class,
+                () -> backend.putObject("user-1-files/docs/a.txt", failing, -1, null));
+        Assertions.assertThrows(MinioOperationException.class, () -> backend.putObject("user-1-files/docs/b.txt",
+                new ByteArrayInputStream(new byte[3]), 10, null));
+
+        Assertions.assertEquals("original", read("user-1-files/docs/a.txt"));
+        Assertions.assertTrue(backend.statObject("user-1-files/docs/b.txt").isEmpty());
+        try (Stream<Path> temp = Files.list(root.resolve(".tmp"))) {
+            Assertions.assertEquals(0, temp.count());
+        }
+        Assertions.assertEquals(3, meterRegistry.get("storage.minio.requests").tag("operation", "put").timer().count());
+        Assertions.assertEquals(2, meterRegistry.get("storage.minio.errors").tag("operation", "put").counter().count());
+    }
+
+    @Test
+    void publishedObjectShouldBeReadableWithRanges() throws IOException {
+        String etag = put("user-1-files/docs/range.txt", "0123456789");
+
+        try (InputStream range = backend.getObject("user-1-files/docs/range.txt", 2, 4)) {
+            Assertions.assertEquals("2345", new String(range.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        StoredObject stored = backend.statObject("user-1-files/docs/range.txt").orElseThrow();
+        Assertions.assertEquals(10, stored.size());
+        Assertions.assertEquals(etag, stored.etag());
+        //Файл не выдается за папку и наоборот
+        Assertions.assertTrue(backend.statObject("user-1-files/docs/range.txt/").isEmpty());
+        Assertions.assertTrue(backend.statObject("user-1-files/docs").isEmpty());
+    }
+
+    @Test
+    void removeObjectsShouldDeleteContentBeforeFolders() {
+        put("user-1-files/docs/", "");
+        put("user-1-files/docs/nested/", "");
+        put("user-1-files/docs/nested/c.txt", "c");
+        put("user-1-files/docs/b.txt", "b");
+        put("user-1-files/kept/", "");
+        put("user-1-files/kept/d.txt", "d");
+
+        //Папки идут раньше своего содержимого: без сортировки их удаление упало бы на непустом каталоге
+        Map<String, String> failed = backend.removeObjects(List.of("user-1-files/docs/", "user-1-files/docs/nested/",
+                "user-1-files/kept/", "user-1-files/docs/nested/c.txt", "user-1-files/docs/b.txt").iterator());
+
+        Assertions.assertEquals(Map.of(), failed);
+        Assertions.assertFalse(Files.exists(root.resolve("user-1-files/docs")));
+        //Непустая папка остается, как в S3
+        Assertions.assertTrue(backend.statObject("user-1-files/kept/").isPresent());
+        Assertions.assertTrue(backend.statObject("user-1-files/kept/d.txt").isPresent());
+    }
+
+    @Test
+    void listingShouldFollowKeyOrder() {
+        put("user-1-files/docs/", "");
+        put("user-1-files/docs/z.txt", "z");
+        put("user-1-files/docs/nested/c.txt", "c");
+        put("user-1-files/docs/a.txt", "a");
+        put("user-1-files/docs/nested/b.txt", "b");
+
+        Assertions.assertEquals(List.of("user-1-files/docs/a.txt", "user-1-files/docs/nested/", "user-1-files/docs/z.txt"),
+                keys(backend.listObjects("user-1-files/docs/", FolderTraversalMode.NON_RECURSIVE)));
+        Assertions.assertEquals(List.of("user-1-files/docs/", "user-1-files/docs/a.txt", "user-1-files/docs/nested/",
+                        "user-1-files/docs/nested/b.txt", "user-1-files/docs/nested/c.txt", "user-1-files/docs/z.txt"),
+                keys(backend.listObjects("user-1-files/docs/", FolderTraversalMode.RECURSIVE)));
+        Assertions.assertEquals(List.of("user-1-files/docs/nested/", "user-1-files/docs/nested/b.txt",
+                        "user-1-files/docs/nested/c.txt"),
+                keys(backend.listObjects("user-1-files/docs/n", FolderTraversalMode.RECURSIVE)));
+        //Каталог временных файлов в листинг не попадает
+        Assertions.assertEquals(List.of("user-1-files/"), keys(backend.listObjects("", FolderTraversalMode.NON_RECURSIVE)));
+        Assertions.assertEquals(List.of(), keys(backend.listObjects("user-1-files/missing/", FolderTraversalMode.RECURSIVE)));
+        Assertions.assertEquals(4, meterRegistry.get("storage.minio.requests").tag("operation", "list").timer().count());
+    }
+
+    private String put(String key, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return backend.putObject(key, new ByteArrayInputStream(bytes), bytes.length, null);
+    }
+
+    private String read(String key) throws IOException {
+        try (InputStream inputStream = backend.getObject(key)) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<String> keys(Iterator<StoredObject> listing) {
+        List<String> keys = new ArrayList<>();
+        listing.forEachRemaining(object -> keys.add(object.key()));
+        return keys;
+    }
+}
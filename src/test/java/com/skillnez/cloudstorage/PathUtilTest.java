@@ -7,6 +7,8 @@ import com.skillnez.cloudstorage.utils.PathUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class PathUtilTest {
@@ -47,6 +49,22 @@ public class PathUtilTest {
                 () -> PathUtils.formatPathForBackend(USER_PATH_W_RESTRICTED_CHARS, DEFAULT_USER_ID));
     }
 
+    @Test
+    void testNormalizePath_separatorsAndDots() {
+        Assertions.assertEquals("docs/reports/", PathUtils.normalizePath("\\docs\\\\reports  /"));
+        Assertions.assertEquals("docs/./test.txt", PathUtils.normalizePath("docs/..../test.txt"));
+        Assertions.assertEquals("docstest", PathUtils.normalizePath("docs/  /test"));
+        Assertions.assertEquals(" test", PathUtils.normalizePath("/ test"));
+    }
+
+    @Test
+    void testGetParentFolders() {
+        Assertions.assertEquals(List.of("user-1-files/", "user-1-files/docs/"),
+                PathUtils.getParentFolders("user-1-files/docs/test.txt"));
+        Assertions.assertEquals(List.of("user-1-files/"), PathUtils.getParentFolders(NORMAL_DIRECTORY_PATH));
+        Assertions.assertEquals(List.of(), PathUtils.getParentFolders(USER_PATH_PREFIX));
+    }
+
     @Test
     public void testFormatPathForUpload() {
         ///В данных тестах не проверяется валидность пути, потому что все то же самое проверено в тестах выше
@@ -95,4 +113,18 @@ public class PathUtilTest {
                 () -> PathUtils.formStorageInfoResponseDto("", 10L));
     }
 
+    @Test
+    void testOverlaps_folderContainsPath() {
+        Assertions.assertTrue(PathUtils.overlaps("user-1-files/docs/", "user-1-files/docs/a.txt"));
+        Assertions.assertTrue(PathUtils.overlaps("user-1-files/docs/a/b/", "user-1-files/docs/"));
+        Assertions.assertTrue(PathUtils.overlaps("user-1-files/docs/a.txt", "user-1-files/docs/a.txt"));
+    }
+
+    @Test
+    void testOverlaps_siblingsWithCommonPrefix() {
+        Assertions.assertFalse(PathUtils.overlaps("user-1-files/docs/a.txt", "user-1-files/docs/a.txt.bak"));
+        Assertions.assertFalse(PathUtils.overlaps("user-1-files/docs", "user-1-files/docs2/"));
+        Assertions.assertFalse(PathUtils.overlaps("user-1-files/docs/", "user-1-files/docs2/"));
+    }
+
 }
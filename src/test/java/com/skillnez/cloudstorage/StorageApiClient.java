@@ -0,0 +1,102 @@
+package com.skillnez.cloudstorage;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+//HTTP-клиент одного пользователя к запущенному приложению: сессионная кука хранится в своем CookieManager
+class StorageApiClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+    private final HttpClient httpClient;
+    private final String baseUrl;
+
+    StorageApiClient(int port) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .cookieHandler(new CookieManager())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.baseUrl = "http://localhost:" + port;
+    }
+
+    HttpResponse<byte[]> signUp(String username, String password) throws IOException, InterruptedException {
+        String body = "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}";
+        return send(request("/api/auth/sign-up")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+    }
+
+    HttpResponse<byte[]> createFolder(String path) throws IOException, InterruptedException {
+        return send(request("/api/directory?path=" + encode(path)).POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    //Все файлы уходят одним multipart-запросом в поле object, как их отправляет фронтенд
+    HttpResponse<byte[]> upload(String folder, Map<String, byte[]> files) throws IOException, InterruptedException {
+        String boundary = UUID.randomUUID().toString();
+        List<byte[]> parts = new ArrayList<>();
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            parts.add(("--" + boundary + "\r\n"
+                       + "Content-Disposition: form-data; name=\"object\"; filename=\"" + file.getKey() + "\"\r\n"
+                       + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            parts.add(file.getValue());
+            parts.add("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        parts.add(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return send(request("/api/resource?path=" + encode(folder))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(parts)));
+    }
+
+    HttpResponse<byte[]> list(String path) throws IOException, InterruptedException {
+        return send(request("/api/directory?path=" + encode(path)).GET());
+    }
+
+    HttpResponse<byte[]> download(String path) throws IOException, InterruptedException {
+        return send(request("/api/resource/download?path=" + encode(path)).GET());
+    }
+
+    HttpResponse<byte[]> download(String path, String range) throws IOException, InterruptedException {
+        return send(request("/api/resource/download?path=" + encode(path)).header("Range", range).GET());
+    }
+
+    HttpResponse<byte[]> move(String from, String to) throws IOException, InterruptedException {
+        return send(request("/api/resource/move?from=" + encode(from) + "&to=" + encode(to)).GET());
+    }
+
+    HttpResponse<byte[]> bulk(String operationsJson) throws IOException, InterruptedException {
+        return send(request("/api/resource/bulk")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"operations\":" + operationsJson + "}")));
+    }
+
+    HttpResponse<byte[]> usage() throws IOException, InterruptedException {
+        return send(request("/api/user/usage").GET());
+    }
+
+    HttpResponse<byte[]> delete(String path) throws IOException, InterruptedException {
+        return send(request("/api/resource?path=" + encode(path)).DELETE());
+    }
+
+    private HttpRequest.Builder request(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
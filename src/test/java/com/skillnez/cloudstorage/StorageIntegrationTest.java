@@ -0,0 +1,183 @@
+package com.skillnez.cloudstorage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skillnez.cloudstorage.dto.StorageInfoResponseDto;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+//Полный путь запроса: контроллеры, индекс в Postgres и MinIO-клиент поверх InMemoryS3Server
+@Import({TestcontainersConfiguration.class, InMemoryS3Configuration.class})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StorageIntegrationTest {
+
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private StorageApiClient client;
+
+    @Autowired
+    StorageIntegrationTest(ObjectMapper objectMapper, @LocalServerPort int port) {
+        this.objectMapper = objectMapper;
+        this.port = port;
+    }
+
+    @BeforeEach
+    void signUp() throws IOException, InterruptedException {
+        client = new StorageApiClient(port);
+        String username = "storage_" + UUID.randomUUID().toString().substring(0, 8);
+        Assertions.assertEquals(201, client.signUp(username, "password").statusCode());
+        Assertions.assertEquals(201, client.createFolder("docs/").statusCode());
+    }
+
+    @Test
+    public void uploadedFilesShouldBeListedAndDownloaded() throws IOException, InterruptedException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("a.txt", "hello storage".getBytes(StandardCharsets.UTF_8));
+        files.put("b.txt", new byte[0]);
+        Assertions.assertEquals(201, client.upload("docs/", files).statusCode());
+
+        Assertions.assertEquals(List.of("a.txt", "b.txt"), names(client.list("docs/")));
+        HttpResponse<byte[]> download = client.download("docs/a.txt");
+        Assertions.assertEquals(200, download.statusCode());
+        Assertions.assertArrayEquals(files.get("a.txt"), download.body());
+    }
+
+    @Test
+    public void rangeDownloadShouldReturnRequestedBytes() throws IOException, InterruptedException {
+        client.upload("docs/", Map.of("range.txt", "0123456789".getBytes(StandardCharsets.UTF_8)));
+
+        HttpResponse<byte[]> download = client.download("docs/range.txt", "bytes=2-5");
+        Assertions.assertEquals(206, download.statusCode());
+        Assertions.assertEquals("2345", new String(download.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void overlappingRangesShouldBeCoalesced() throws IOException, InterruptedException {
+        client.upload("docs/", Map.of("range.txt", "0123456789".getBytes(StandardCharsets.UTF_8)));
+
+        HttpResponse<byte[]> download = client.download("docs/range.txt", "bytes=0-,0-,2-4,0-");
+        Assertions.assertEquals(206, download.statusCode());
+        Assertions.assertEquals("bytes 0-9/10", download.headers().firstValue("Content-Range").orElse(null));
+        Assertions.assertEquals("0123456789", new String(download.body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void malformedRangeShouldBeIgnored() throws IOException, InterruptedException {
+        client.upload("docs/", Map.of("range.txt", "0123456789".getBytes(StandardCharsets.UTF_8)));
+
+        HttpResponse<byte[]> download = client.download("docs/range.txt", "bytes=abc");
+        Assertions.assertEquals(200, download.statusCode());
+        Assertions.assertEquals("0123456789", new String(download.body(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(416, client.download("docs/range.txt", "bytes=20-30").statusCode());
+    }
+
+    @Test
+    public void movedFileShouldKeepContent() throws IOException, InterruptedException {
+        client.upload("docs/", Map.of("old.txt", "content".getBytes(StandardCharsets.UTF_8)));
+        client.createFolder("docs/archive/");
+
+        Assertions.assertEquals(200, client.move("docs/old.txt", "docs/archive/new.txt").statusCode());
+        Assertions.assertEquals(List.of("archive/"), names(client.list("docs/")));
+        Assertions.assertArrayEquals("content".getBytes(StandardCharsets.UTF_8),
+                client.download("docs/archive/new.txt").body());
+    }
+
+    @Test
+    public void folderShouldBeDownloadedAsZip() throws IOException, InterruptedException {
+        client.createFolder("docs/nested/");
+        client.upload("docs/", Map.of("top.txt", "top".getBytes(StandardCharsets.UTF_8)));
+        client.upload("docs/nested/", Map.of("inner.txt", "inner".getBytes(StandardCharsets.UTF_8)));
+
+        HttpResponse<byte[]> download = client.download("docs/");
+        Assertions.assertEquals(200, download.statusCode());
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(download.body()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        Assertions.assertTrue(entries.contains("docs/top.txt"), entries.toString());
+        Assertions.assertTrue(entries.contains("docs/nested/inner.txt"), entries.toString());
+    }
+
+    @Test
+    public void deletedFolderShouldDisappearWithContent() throws IOException, InterruptedException {
+        client.upload("docs/", Map.of("a.txt", "a".getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertEquals(204, client.delete("docs/").statusCode());
+        Assertions.assertEquals(List.of(), names(client.list("")));
+        Assertions.assertEquals(404, client.download("docs/a.txt").statusCode());
+    }
+
+    @Test
+    public void bulkShouldDeleteMoveAndCopyInOneRequest() throws IOException, InterruptedException {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("a.txt", "aa".getBytes(StandardCharsets.UTF_8));
+        files.put("a.txt.bak", "aaa".getBytes(StandardCharsets.UTF_8));
+        files.put("b.txt", "bbbb".getBytes(StandardCharsets.UTF_8));
+        files.put("c.txt", "ccccc".getBytes(StandardCharsets.UTF_8));
+        client.upload("docs/", files);
+        client.createFolder("docs/archive/");
+
+        //a.txt и a.txt.bak - соседние файлы с общим префиксом, а не вложенные пути
+        HttpResponse<byte[]> response = client.bulk("""
+                [{"type":"DELETE","path":"docs/a.txt"},
+                 {"type":"DELETE","path":"docs/a.txt.bak"},
+                 {"type":"MOVE","from":"docs/b.txt","to":"docs/archive/b.txt"},
+                 {"type":"COPY","from":"docs/c.txt","to":"docs/archive/c.txt"}]""");
+        Assertions.assertEquals(List.of("COMPLETED", "COMPLETED", "COMPLETED", "COMPLETED"), statuses(response));
+
+        Assertions.assertEquals(List.of("archive/", "c.txt"), names(client.list("docs/")));
+        Assertions.assertEquals(List.of("b.txt", "c.txt"), names(client.list("docs/archive/")));
+        Assertions.assertArrayEquals(files.get("c.txt"), client.download("docs/archive/c.txt").body());
+        JsonNode usage = objectMapper.readTree(client.usage().body());
+        Assertions.assertEquals(14, usage.get("usedBytes").asLong());
+        Assertions.assertEquals(3, usage.get("objectCount").asLong());
+    }
+
+    @Test
+    public void bulkShouldRejectOperationsOnOverlappingPaths() throws IOException, InterruptedException {
+        client.upload("docs/", Map.of("c.txt", "c".getBytes(StandardCharsets.UTF_8)));
+        client.createFolder("docs/archive/");
+
+        HttpResponse<byte[]> response = client.bulk("""
+                [{"type":"COPY","from":"docs/c.txt","to":"docs/archive/c.txt"},
+                 {"type":"DELETE","path":"docs/archive/"},
+                 {"type":"DELETE","path":"docs/missing.txt"}]""");
+        Assertions.assertEquals(List.of("COMPLETED", "FAILED", "FAILED"), statuses(response));
+        Assertions.assertEquals(List.of("c.txt"), names(client.list("docs/archive/")));
+        Assertions.assertArrayEquals("c".getBytes(StandardCharsets.UTF_8), client.download("docs/c.txt").body());
+    }
+
+    private List<String> statuses(HttpResponse<byte[]> bulkResponse) throws IOException {
+        Assertions.assertEquals(200, bulkResponse.statusCode());
+        List<String> statuses = new ArrayList<>();
+        objectMapper.readTree(bulkResponse.body()).forEach(result -> statuses.add(result.get("status").asText()));
+        return statuses;
+    }
+
+    private List<String> names(HttpResponse<byte[]> listing) throws IOException {
+        Assertions.assertEquals(200, listing.statusCode());
+        List<StorageInfoResponseDto> elements = objectMapper.readValue(listing.body(), new TypeReference<>() {
+        });
+        return elements.stream().map(StorageInfoResponseDto::getName).sorted().toList();
+    }
+}
@@ -0,0 +1,242 @@
+package com.skillnez.cloudstorage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный прогон: {@code loadtest.users} пользователей одновременно гоняют через настоящие контроллеры
+ * загрузку, листинг, скачивание, перемещение и zip папки поверх InMemoryS3Server с задержкой.
+ * В отчете на каждый эндпоинт - число запросов, ошибки, пропускная способность и p50/p99.
+ * Запуск: {@code ./mvnw -P load-test test -Dloadtest.users=32 -Dloadtest.max-p99=PT2S}
+ */
+@Slf4j
+@Tag("load")
+@Import({TestcontainersConfiguration.class, InMemoryS3Configuration.class})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "s3-stand-in.latency=${loadtest.s3-latency:PT0.005S}",
+        "s3-stand-in.latency-jitter=${loadtest.s3-latency-jitter:PT0.005S}",
+        "logging.level.com.skillnez.cloudstorage.service=WARN"})
+class StorageLoadTest {
+
+    private static final List<String> ENDPOINTS = List.of("upload", "list", "download", "move", "zip");
+    private static final String FOLDER = "load/";
+    private static final String MOVED_FOLDER = "load/moved/";
+
+    @LocalServerPort
+    private int port;
+    @Autowired
+    private InMemoryS3Server inMemoryS3Server;
+    @Value("${loadtest.users:8}")
+    private int users;
+    @Value("${loadtest.iterations:20}")
+    private int iterations;
+    @Value("${loadtest.files-per-upload:2}")
+    private int filesPerUpload;
+    @Value("${loadtest.file-size:262144}")
+    private int fileSize;
+    @Value("${loadtest.zip-every:5}")
+    private int zipEvery;
+    @Value("${loadtest.max-p99:}")
+    private String maxP99;
+    @Value("${loadtest.report:target/load-test-report.csv}")
+    private Path reportPath;
+
+    @FunctionalInterface
+    private interface ApiCall {
+        HttpResponse<byte[]> send() throws IOException, InterruptedException;
+    }
+
+    private static final class LatencyRecorder {
+
+        private final Map<String, Queue<Long>> latencies = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void record(String endpoint, long nanos, boolean successful) {
+            latencies.computeIfAbsent(endpoint, ignored -> new ConcurrentLinkedQueue<>()).add(nanos);
+            if (!successful) {
+                errors.computeIfAbsent(endpoint, ignored -> new LongAdder()).increment();
+            }
+        }
+
+        long[] sorted(String endpoint) {
+            long[] values = latencies.getOrDefault(endpoint, new ConcurrentLinkedQueue<>()).stream()
+                    .mapToLong(Long::longValue)
+                    .toArray();
+            Arrays.sort(values);
+            return values;
+        }
+
+        long errors(String endpoint) {
+            LongAdder count = errors.get(endpoint);
+            return count == null ? 0 : count.sum();
+        }
+    }
+
+    private record EndpointStats(String endpoint, int requests, long errors, double throughput,
+                                 long p50Nanos, long p99Nanos, long maxNanos) {
+
+        String toCsv() {
+            return String.join(",", endpoint, Integer.toString(requests), Long.toString(errors),
+                    String.format(Locale.ROOT, "%.1f", throughput), millis(p50Nanos), millis(p99Nanos), millis(maxNanos));
+        }
+
+        private static String millis(long nanos) {
+            return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+        }
+    }
+
+    @Test
+    public void storageEndpointsShouldHoldUpUnderConcurrentUsers() throws Exception {
+        //Регистрация идет до замера: BCrypt намеренно медленный и к файловым эндпоинтам отношения не имеет
+        List<StorageApiClient> clients = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            StorageApiClient client = new StorageApiClient(port);
+            String username = "load" + i + "_" + UUID.randomUUID().toString().substring(0, 8);
+            Assertions.assertEquals(201, client.signUp(username, "password").statusCode());
+            Assertions.assertEquals(201, client.createFolder(FOLDER).statusCode());
+            Assertions.assertEquals(201, client.createFolder(MOVED_FOLDER).statusCode());
+            clients.add(client);
+        }
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        CountDownLatch start = new CountDownLatch(1);
+        long elapsedNanos;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> sessions = new ArrayList<>(users);
+            for (StorageApiClient client : clients) {
+                sessions.add(executor.submit(() -> {
+                    start.await();
+                    runSession(client, recorder);
+                    return null;
+                }));
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> session : sessions) {
+                session.get();
+            }
+            elapsedNanos = System.nanoTime() - startedAt;
+        }
+
+        List<EndpointStats> stats = report(recorder, elapsedNanos);
+        for (EndpointStats endpointStats : stats) {
+            Assertions.assertEquals(0, endpointStats.errors(), endpointStats.endpoint() + " returned errors");
+        }
+        if (!maxP99.isBlank()) {
+            long limitNanos = Duration.parse(maxP99).toNanos();
+            for (EndpointStats endpointStats : stats) {
+                Assertions.assertTrue(endpointStats.p99Nanos() <= limitNanos,
+                        endpointStats.endpoint() + " p99 " + EndpointStats.millis(endpointStats.p99Nanos())
+                        + " ms exceeds " + maxP99);
+            }
+        }
+    }
+
+    private void runSession(StorageApiClient client, LatencyRecorder recorder) throws InterruptedException {
+        byte[] content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Map<String, byte[]> files = new LinkedHashMap<>();
+            for (int file = 0; file < filesPerUpload; file++) {
+                files.put("file-" + iteration + "-" + file + ".bin", content);
+            }
+            String firstFile = FOLDER + "file-" + iteration + "-0.bin";
+            String movedFile = MOVED_FOLDER + "file-" + iteration + "-0.bin";
+            timed(recorder, "upload", 201, () -> client.upload(FOLDER, files));
+            timed(recorder, "list", 200, () -> client.list(FOLDER));
+            timed(recorder, "download", 200, () -> client.download(firstFile));
+            timed(recorder, "move", 200, () -> client.move(firstFile, movedFile));
+            if ((iteration + 1) % zipEvery == 0) {
+                timed(recorder, "zip", 200, () -> client.download(FOLDER));
+            }
+        }
+    }
+
+    private static void timed(LatencyRecorder recorder, String endpoint, int expectedStatus, ApiCall call)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = call.send().statusCode();
+        } catch (IOException e) {
+            log.warn("{} request failed", endpoint, e);
+            status = -1;
+        }
+        recorder.record(endpoint, System.nanoTime() - start, status == expectedStatus);
+        if (status != expectedStatus) {
+            log.warn("{} returned {} instead of {}", endpoint, status, expectedStatus);
+        }
+    }
+
+    private List<EndpointStats> report(LatencyRecorder recorder, long elapsedNanos) throws IOException {
+        double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        List<EndpointStats> stats = new ArrayList<>();
+        for (String endpoint : ENDPOINTS) {
+            long[] latencies = recorder.sorted(endpoint);
+            if (latencies.length == 0) {
+                continue;
+            }
+            stats.add(new EndpointStats(endpoint, latencies.length, recorder.errors(endpoint),
+                    latencies.length / elapsedSeconds, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    latencies[latencies.length - 1]));
+        }
+
+        StringBuilder table = new StringBuilder(String.format("%n%d users x %d iterations, %d x %d bytes per upload, %.1f s%n",
+                users, iterations, filesPerUpload, fileSize, elapsedSeconds));
+        table.append(String.format("%-10s %9s %7s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms"));
+        for (EndpointStats endpointStats : stats) {
+            table.append(String.format("%-10s %9d %7d %10.1f %10.2f %10.2f %10.2f%n", endpointStats.endpoint(),
+                    endpointStats.requests(), endpointStats.errors(), endpointStats.throughput(),
+                    endpointStats.p50Nanos() / 1_000_000.0, endpointStats.p99Nanos() / 1_000_000.0,
+                    endpointStats.maxNanos() / 1_000_000.0));
+        }
+        table.append("S3 requests: ").append(inMemoryS3Server.getRequestCounts());
+        log.info(table.toString());
+
+        List<String> csv = new ArrayList<>();
+        csv.add("endpoint,requests,errors,throughput_rps,p50_ms,p99_ms,max_ms");
+        stats.forEach(endpointStats -> csv.add(endpointStats.toCsv()));
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+        Files.write(reportPath, csv);
+        return stats;
+    }
+
+    //Ближайший ранг: значение, не меньше которого q-я доля замеров
+    private static long percentile(long[] sorted, double quantile) {
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
@@ -0,0 +1,179 @@
+package com.skillnez.cloudstorage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skillnez.cloudstorage.dto.TokenResponseDto;
+import com.skillnez.cloudstorage.entity.CustomUserDetails;
+import com.skillnez.cloudstorage.security.TokenDenyList;
+import com.skillnez.cloudstorage.security.TokenService;
+import com.skillnez.cloudstorage.security.TokenService.TokenClaims;
+import com.skillnez.cloudstorage.security.UserDetailsService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Redis подменен общим множеством: два TokenService с разными TokenDenyList ведут себя как два узла
+public class TokenServiceTest {
+
+    private static final String SECRET = Base64.getEncoder()
+            .encodeToString("0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> redisDenyList = ConcurrentHashMap.newKeySet();
+    private final UserDetailsService userDetailsService = Mockito.mock(UserDetailsService.class);
+    private TokenService tokenService;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(userDetailsService.loadUserByUsername("alice"))
+                .thenAnswer(invocation -> user(1L, "alice", true, "ROLE_USER"));
+        tokenService = tokenService(Duration.ofMinutes(15));
+    }
+
+    @Test
+    void issuedTokensShouldVerifyWithTheirType() {
+        TokenResponseDto tokens = tokenService.issue(user(1L, "alice", true, "ROLE_USER"));
+
+        TokenClaims access = tokenService.verify(tokens.getAccessToken(), TokenService.ACCESS);
+        TokenClaims refresh = tokenService.verify(tokens.getRefreshToken(), TokenService.REFRESH);
+        Assertions.assertEquals(1L, access.sub());
+        Assertions.assertEquals("alice", access.usr());
+        Assertions.assertEquals(List.of("ROLE_USER"), access.rol());
+        Assertions.assertEquals(access.sid(), refresh.sid());
+        Assertions.assertNotEquals(access.jti(), refresh.jti());
+    }
+
+    @Test
+    void tamperedTokenShouldBeRejected() throws Exception {
+        String token = tokenService.issue(user(1L, "alice", true, "ROLE_USER")).getAccessToken();
+        int dot = token.indexOf('.');
+        TokenClaims claims = objectMapper.readValue(Base64.getUrlDecoder().decode(token.substring(0, dot)), TokenClaims.class);
+        TokenClaims escalated = new TokenClaims(claims.typ(), claims.jti(), claims.sid(), claims.sub(), claims.usr(),
+                List.of("ROLE_ADMIN"), claims.exp());
+        String forged = Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(escalated))
+                        + token.substring(dot);
+
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.verify(forged, TokenService.ACCESS));
+        Assertions.assertThrows(BadCredentialsException.class,
+                () -> tokenService.verify(token.substring(0, dot) + ".AAAA", TokenService.ACCESS));
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.verify("garbage", TokenService.ACCESS));
+
+        TokenService otherKey = new TokenService(objectMapper, denyList(), userDetailsService,
+                Base64.getEncoder().encodeToString(new byte[32]), Duration.ofMinutes(15), Duration.ofDays(7));
+        Assertions.assertThrows(BadCredentialsException.class, () -> otherKey.verify(token, TokenService.ACCESS));
+    }
+
+    @Test
+    void expiredTokenShouldBeRejected() {
+        TokenService expiring = tokenService(Duration.ofSeconds(-1));
+        String token = expiring.issue(user(1L, "alice", true, "ROLE_USER")).getAccessToken();
+
+        BadCredentialsException e = Assertions.assertThrows(BadCredentialsException.class,
+                () -> expiring.verify(token, TokenService.ACCESS));
+        Assertions.assertEquals("Token expired", e.getMessage());
+    }
+
+    @Test
+    void tokenShouldNotBeAcceptedAsAnotherType() {
+        TokenResponseDto tokens = tokenService.issue(user(1L, "alice", true, "ROLE_USER"));
+
+        Assertions.assertThrows(BadCredentialsException.class,
+                () -> tokenService.verify(tokens.getRefreshToken(), TokenService.ACCESS));
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.refresh(tokens.getAccessToken()));
+    }
+
+    @Test
+    void refreshTokenShouldBeUsableOnceAcrossNodes() {
+        TokenService otherNode = tokenService(Duration.ofMinutes(15));
+        String refreshToken = tokenService.issue(user(1L, "alice", true, "ROLE_USER")).getRefreshToken();
+
+        TokenResponseDto refreshed = tokenService.refresh(refreshToken);
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.refresh(refreshToken));
+        //Второй узел еще не получил pub/sub-сообщение об отзыве, его останавливает ZADD NX
+        Assertions.assertThrows(BadCredentialsException.class, () -> otherNode.refresh(refreshToken));
+        Assertions.assertEquals(1L, tokenService.verify(refreshed.getAccessToken(), TokenService.ACCESS).sub());
+    }
+
+    @Test
+    void revokedSessionShouldRejectAllItsTokens() {
+        TokenResponseDto tokens = tokenService.issue(user(1L, "alice", true, "ROLE_USER"));
+
+        tokenService.revokeSession(tokenService.verify(tokens.getAccessToken(), TokenService.ACCESS));
+        Assertions.assertThrows(BadCredentialsException.class,
+                () -> tokenService.verify(tokens.getAccessToken(), TokenService.ACCESS));
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.refresh(tokens.getRefreshToken()));
+    }
+
+    @Test
+    void refreshShouldUseCurrentUserState() {
+        String refreshToken = tokenService.issue(user(1L, "alice", true, "ROLE_USER")).getRefreshToken();
+        Mockito.when(userDetailsService.loadUserByUsername("alice"))
+                .thenAnswer(invocation -> user(1L, "alice", true, "ROLE_USER", "ROLE_ADMIN"));
+
+        TokenResponseDto refreshed = tokenService.refresh(refreshToken);
+        Assertions.assertEquals(List.of("ROLE_USER", "ROLE_ADMIN"),
+                tokenService.verify(refreshed.getAccessToken(), TokenService.ACCESS).rol());
+    }
+
+    @Test
+    void refreshShouldBeRejectedForMissingReplacedOrDisabledUser() {
+        String disabled = tokenService.issue(user(1L, "alice", true, "ROLE_USER")).getRefreshToken();
+        String missing = tokenService.issue(user(2L, "bob", true, "ROLE_USER")).getRefreshToken();
+        String replaced = tokenService.issue(user(3L, "carol", true, "ROLE_USER")).getRefreshToken();
+        Mockito.when(userDetailsService.loadUserByUsername("alice"))
+                .thenAnswer(invocation -> user(1L, "alice", false, "ROLE_USER"));
+        Mockito.when(userDetailsService.loadUserByUsername("bob")).thenThrow(new UsernameNotFoundException("bob"));
+        //Имя занято другим пользователем после переименования carol
+        Mockito.when(userDetailsService.loadUserByUsername("carol"))
+                .thenAnswer(invocation -> user(4L, "carol", true, "ROLE_USER"));
+
+        Assertions.assertThrows(DisabledException.class, () -> tokenService.refresh(disabled));
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.refresh(missing));
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.refresh(replaced));
+    }
+
+    @Test
+    void blankSecretShouldFailStartup() {
+        Assertions.assertThrows(IllegalStateException.class, () -> new TokenService(objectMapper, denyList(),
+                userDetailsService, " ", Duration.ofMinutes(15), Duration.ofDays(7)));
+        Assertions.assertThrows(IllegalStateException.class, () -> new TokenService(objectMapper, denyList(),
+                userDetailsService, Base64.getEncoder().encodeToString(new byte[16]), Duration.ofMinutes(15),
+                Duration.ofDays(7)));
+    }
+
+    private TokenService tokenService(Duration accessTtl) {
+        return new TokenService(objectMapper, denyList(), userDetailsService, SECRET, accessTtl, Duration.ofDays(7));
+    }
+
+    @SuppressWarnings("unchecked")
+    private TokenDenyList denyList() {
+        StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+        ZSetOperations<String, String> zSet = Mockito.mock(ZSetOperations.class);
+        Mockito.when(redisTemplate.opsForZSet()).thenReturn(zSet);
+        Mockito.when(zSet.add(Mockito.anyString(), Mockito.anyString(), Mockito.anyDouble()))
+                .thenAnswer(invocation -> redisDenyList.add(invocation.getArgument(1)));
+        Mockito.when(zSet.addIfAbsent(Mockito.anyString(), Mockito.anyString(), Mockito.anyDouble()))
+                .thenAnswer(invocation -> redisDenyList.add(invocation.getArgument(1)));
+        return new TokenDenyList(redisTemplate);
+    }
+
+    private static CustomUserDetails user(Long id, String username, boolean enabled, String... roles) {
+        return new CustomUserDetails(id, username, null, enabled, true, true, true,
+                Arrays.stream(roles).<GrantedAuthority>map(SimpleGrantedAuthority::new).toList());
+    }
+}
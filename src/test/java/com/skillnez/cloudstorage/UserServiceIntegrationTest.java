@@ -14,7 +14,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
 import org.springframework.dao.DataIntegrityViolationException;
 
-@Import(TestcontainersConfiguration.class)
+@Import({TestcontainersConfiguration.class, InMemoryS3Configuration.class})
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @Transactional
 class UserServiceIntegrationTest {